@@ -0,0 +1,65 @@
+package com.dev.aman.imagehistogram;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opencv.android.OpenCVLoader;
+import org.opencv.core.MatOfInt4;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+
+import static org.junit.Assert.*;
+
+/**
+ * toArray(dst, offset, length) of multi-channel MatOf* classes, length and result count Mat elements
+ * for primitive and object arrays alike. Needs the OpenCV native library, hence on a device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MatOfToArrayTest {
+
+    @BeforeClass
+    public static void loadOpenCV() {
+        assertTrue(OpenCVLoader.initDebug());
+    }
+
+    @Test
+    public void primitive_lengthCountsElements() {
+        MatOfInt4 mat = new MatOfInt4(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12);
+        int[] dst = new int[1 + 2 * 4 + 1];
+
+        int copied = mat.toArray(dst, 1, 2);
+
+        assertEquals(2, copied);
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 0}, dst);
+        mat.release();
+    }
+
+    @Test
+    public void primitive_lengthAboveSize_copiesAllElements() {
+        MatOfInt4 mat = new MatOfInt4(1, 2, 3, 4, 5, 6, 7, 8);
+        int[] dst = new int[8];
+
+        assertEquals(2, mat.toArray(dst, 0, 10));
+        assertArrayEquals(new int[]{1, 2, 3, 4, 5, 6, 7, 8}, dst);
+        mat.release();
+    }
+
+    @Test
+    public void object_lengthCountsElements_andReusesPoints() {
+        MatOfPoint mat = new MatOfPoint(new Point(1, 2), new Point(3, 4), new Point(5, 6));
+        Point reused = new Point();
+        Point[] dst = new Point[]{null, reused, null, null};
+
+        int copied = mat.toArray(dst, 1, 2);
+
+        assertEquals(2, copied);
+        assertNull(dst[0]);
+        assertSame(reused, dst[1]);
+        assertEquals(new Point(1, 2), dst[1]);
+        assertEquals(new Point(3, 4), dst[2]);
+        assertNull(dst[3]);
+        mat.release();
+    }
+}
@@ -2,7 +2,6 @@ package com.dev.aman.imagehistogram.activity;
 
 import android.Manifest;
 import android.app.Dialog;
-import android.app.ProgressDialog;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
@@ -14,7 +13,6 @@ import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Path;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
 import android.provider.MediaStore;
@@ -24,39 +22,61 @@ import android.support.v4.content.ContextCompat;
 import android.support.v7.app.AppCompatActivity;
 import android.util.DisplayMetrics;
 import android.util.Log;
-import android.util.SparseArray;
 import android.view.View;
 import android.widget.Button;
+import android.widget.CheckBox;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import com.dev.aman.imagehistogram.R;
 import com.dev.aman.imagehistogram.helper.BitmapHelper;
-import com.dev.aman.imagehistogram.helper.HistogramHelper;
+import com.dev.aman.imagehistogram.helper.ChannelHistograms;
+import com.dev.aman.imagehistogram.helper.GalleryIndexer;
+import com.dev.aman.imagehistogram.helper.HistogramCache;
+import com.dev.aman.imagehistogram.helper.HistogramCompartments;
+import com.dev.aman.imagehistogram.helper.HistogramJobs;
+import com.dev.aman.imagehistogram.helper.HistogramKernel;
+import com.dev.aman.imagehistogram.helper.HistogramRenderer;
+import com.dev.aman.imagehistogram.helper.HistogramStore;
+import com.dev.aman.imagehistogram.helper.TiledHistogram;
 
 import org.opencv.android.OpenCVLoader;
-import org.opencv.android.Utils;
-import org.opencv.core.Core;
-import org.opencv.core.Mat;
-import org.opencv.core.MatOfFloat;
-import org.opencv.core.MatOfInt;
-import org.opencv.core.Point;
-import org.opencv.core.Scalar;
-import org.opencv.core.Size;
-import org.opencv.imgproc.Imgproc;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
 
 public class MainActivity extends AppCompatActivity {
 
     private static final String TAG = "MainActivity";
     private static final int PERMISSION_REQUEST_CODE = 1;
     private static final int REQUEST_IMAGE_CAPTURE = 2;
+    private static final long HISTOGRAM_DISK_CACHE_BYTES = 4 * 1024 * 1024;
+    private static final String HISTOGRAM_STORE_FILE = "histograms.store";
     private ImageView mSelectedImage, mImageHistogram;
     private Button mOpenCameraBtn;
+    private Button mIndexGalleryBtn;
+    private TextView mIndexProgress;
+    private GalleryIndexer mIndexer;
+    private CheckBox mExactHistogram;
+    private final HistogramCompartments mCompartments = new HistogramCompartments();
+    private final HistogramJobs mHistogramJobs = new HistogramJobs();
+    private HistogramRenderer mRenderer;
+    private HistogramCache mHistogramCache;
+    private final float[][] mHistData = new float[3][HistogramKernel.BINS];
+
+    private static class HistogramResult {
+        final Uri uri;
+        final Bitmap image;
+        final Bitmap chart;
+
+        HistogramResult(Uri uri, Bitmap image, Bitmap chart) {
+            this.uri = uri;
+            this.image = image;
+            this.chart = chart;
+        }
+    }
 
     static {
         if (OpenCVLoader.initDebug()) {
@@ -76,8 +96,13 @@ public class MainActivity extends AppCompatActivity {
 
     private void init() {
         mOpenCameraBtn = findViewById(R.id.openCamera);
+        mIndexGalleryBtn = findViewById(R.id.indexGallery);
+        mIndexProgress = findViewById(R.id.indexProgress);
         mSelectedImage = findViewById(R.id.selectedImage);
         mImageHistogram = findViewById(R.id.imageHistogram);
+        mExactHistogram = findViewById(R.id.exactHistogram);
+        int memoryBytes = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 16);
+        mHistogramCache = new HistogramCache(getApplicationContext(), memoryBytes, HISTOGRAM_DISK_CACHE_BYTES);
     }
 
     private void onClick() {
@@ -92,6 +117,54 @@ public class MainActivity extends AppCompatActivity {
                 }
             }
         });
+        mIndexGalleryBtn.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                if (mIndexer != null) {
+                    mIndexer.cancel();
+                } else if (checkPermission()) {
+                    startIndexing();
+                } else {
+                    requestPermission();
+                }
+            }
+        });
+    }
+
+    // Histograms the whole MediaStore library into the store, a new run resumes where the last one stopped.
+    private void startIndexing() {
+        final HistogramStore store;
+        try {
+            store = HistogramStore.open(new File(getFilesDir(), HISTOGRAM_STORE_FILE));
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot open the histogram store", e);
+            Toast.makeText(this, "Cannot open the histogram store", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        mIndexer = new GalleryIndexer(this, store);
+        mIndexGalleryBtn.setText("Stop Indexing");
+        mIndexProgress.setVisibility(View.VISIBLE);
+        mIndexProgress.setText("Indexing...");
+        mIndexer.start(new GalleryIndexer.Listener() {
+            @Override
+            public void onProgress(GalleryIndexer.Progress progress) {
+                mIndexProgress.setText(progress.toString());
+            }
+
+            @Override
+            public void onFinished(GalleryIndexer.Progress progress) {
+                // All workers are done, the indexer doesn't touch the store anymore.
+                int stored = store.size();
+                try {
+                    store.close();
+                } catch (IOException e) {
+                    Log.w(TAG, "Cannot close the histogram store", e);
+                }
+                mIndexer = null;
+                mIndexGalleryBtn.setText("Index Gallery");
+                mIndexProgress.setText(progress.toString() + "\n" + stored + " images in the store");
+            }
+        });
     }
 
     private void openCamera() {
@@ -102,12 +175,58 @@ public class MainActivity extends AppCompatActivity {
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         if (requestCode == REQUEST_IMAGE_CAPTURE) {
             if (data != null) {
-                Uri selectedImage = data.getData();
-                try {
-                    drawHistogram(BitmapHelper.readBitmapFromPath(this, selectedImage));
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
+                final Uri selectedImage = data.getData();
+                // The chart resolution follows the target view, not the photo.
+                int fallbackSize = getResources().getDisplayMetrics().widthPixels / 2;
+                final int chartWidth = chartSize(mImageHistogram.getLayoutParams().width, fallbackSize);
+                final int chartHeight = chartSize(mImageHistogram.getLayoutParams().height, fallbackSize);
+                final boolean exact = mExactHistogram.isChecked();
+                mHistogramJobs.submit(new HistogramJobs.Job<HistogramResult>() {
+                    @Override
+                    public HistogramResult execute(HistogramJobs.Handle handle) throws Exception {
+                        // Exact and subsampled histograms of the same image are cached separately.
+                        String key = HistogramCache.key(MainActivity.this, selectedImage) + (exact ? "|exact" : "");
+                        HistogramCache.Entry entry = mHistogramCache.get(key);
+                        Bitmap image = null;
+                        if (entry == null) {
+                            BitmapFactory.Options bounds = BitmapHelper.readBounds(MainActivity.this, selectedImage);
+                            if (exact) {
+                                entry = computeExact(selectedImage, bounds);
+                            } else {
+                                BitmapHelper.SampledBitmap sampled = BitmapHelper.readBitmapForHistogram(MainActivity.this,
+                                        selectedImage, bounds, BitmapHelper.DEFAULT_HISTOGRAM_BIN_ERROR);
+                                Log.i(TAG, "Decoded with sample size " + sampled.sampleSize);
+                                handle.throwIfCancelled();
+                                // All channels in one pass over the pixels instead of one calcHist call per channel.
+                                int[][] channelHistograms = ChannelHistograms.computeParallel(sampled.bitmap, false);
+                                entry = new HistogramCache.Entry(channelHistograms, sampled.bitmap.getWidth(),
+                                        sampled.bitmap.getHeight(), sampled.sampleSize);
+                                image = sampled.bitmap;
+                            }
+                        } else {
+                            Log.i(TAG, "Histogram cache hit for " + selectedImage);
+                        }
+                        handle.throwIfCancelled();
+                        Bitmap chart = entry.chart(chartWidth, chartHeight);
+                        if (chart == null) {
+                            chart = drawHistogram(entry, chartWidth, chartHeight, handle);
+                            mHistogramCache.put(key, entry.withChart(chart));
+                        } else {
+                            calculationsOnHistogram(entry);
+                        }
+                        return new HistogramResult(selectedImage, image, chart);
+                    }
+                }, new HistogramJobs.Callback<HistogramResult>() {
+                    @Override
+                    public void onSuccess(HistogramResult result) {
+                        showHistogram(result);
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        e.printStackTrace();
+                    }
+                });
             } else {
                 Toast.makeText(this, "Cancelled", Toast.LENGTH_SHORT).show();
             }
@@ -115,68 +234,81 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
-    private void drawHistogram(Bitmap bitmap) {
-        try {
-            Mat rgba = new Mat();
-            Utils.bitmapToMat(bitmap, rgba);
-
-            Size rgbaSize = rgba.size();
-            int histSize = 256;
-            MatOfInt histogramSize = new MatOfInt(histSize);
-
-            int histogramHeight = (int) rgbaSize.height;
-            int binWidth = 5;
-
-            MatOfFloat histogramRange = new MatOfFloat(0f, 256f);
+    @Override
+    protected void onDestroy() {
+        if (mIndexer != null) {
+            mIndexer.cancel();
+        }
+        mHistogramJobs.shutdown();
+        super.onDestroy();
+    }
 
-            Scalar[] colorsRgb = new Scalar[]{new Scalar(200, 0, 0, 255), new Scalar(0, 200, 0, 255), new Scalar(0, 0, 200, 255)};
-            MatOfInt[] channels = new MatOfInt[]{new MatOfInt(0), new MatOfInt(1), new MatOfInt(2)};
+    // Full-resolution histogram computed tile by tile, so even images larger than the heap are counted
+    // without subsampling. The photo is then shown from its uri.
+    private HistogramCache.Entry computeExact(Uri uri, BitmapFactory.Options bounds) throws Exception {
+        long peakBytes = Math.min(Runtime.getRuntime().maxMemory() / 8, TiledHistogram.DEFAULT_PEAK_BYTES);
+        Log.i(TAG, "Tiled histogram for " + bounds.outWidth + "x" + bounds.outHeight);
+        int[][] channelHistograms = TiledHistogram.compute(this, uri, peakBytes, false);
+        return new HistogramCache.Entry(channelHistograms, bounds.outWidth, bounds.outHeight, 1);
+    }
 
-            Mat[] histograms = new Mat[]{new Mat(), new Mat(), new Mat()};
-            Mat histMatBitmap = new Mat(rgbaSize, rgba.type());
+    // Runs on the HistogramJobs thread, returns the chart bitmap.
+    private Bitmap drawHistogram(HistogramCache.Entry entry, int chartWidth, int chartHeight, HistogramJobs.Handle handle) throws Exception {
+        calculationsOnHistogram(entry);
+        handle.throwIfCancelled();
 
-            for (int i = 0; i < channels.length; i++) {
-                Imgproc.calcHist(Collections.singletonList(rgba), channels[i], new Mat(), histograms[i], histogramSize, histogramRange);
-                Core.normalize(histograms[i], histograms[i], histogramHeight, 0, Core.NORM_INF);
-                for (int j = 0; j < histSize; j++) {
-                    Point p1 = new Point(binWidth * (j - 1), histogramHeight - Math.round(histograms[i].get(j - 1, 0)[0]));
-                    Point p2 = new Point(binWidth * j, histogramHeight - Math.round(histograms[i].get(j, 0)[0]));
-                    Imgproc.line(histMatBitmap, p1, p2, colorsRgb[i], 2, 8, 0);
-                }
-            }
-
-            for (int i = 0; i < histograms.length; i++) {
-                calculationsOnHistogram(histograms[i]);
-            }
+        if (mRenderer == null || mRenderer.width() != chartWidth || mRenderer.height() != chartHeight) {
+            mRenderer = new HistogramRenderer(chartWidth, chartHeight);
+        }
+        int[] pixels = mRenderer.render(mHistData, HistogramRenderer.COLORS_RGB);
+        Bitmap histBitmap = Bitmap.createBitmap(chartWidth, chartHeight, Bitmap.Config.ARGB_8888);
+        histBitmap.setPixels(pixels, 0, chartWidth, 0, 0, chartWidth, chartHeight);
+        return histBitmap;
+    }
 
-            // Don't do that at home or work it's for visualization purpose.
-            BitmapHelper.showBitmap(this, bitmap, mSelectedImage);
+    // Histograms are copied once into reusable arrays, statistics and plotting read from them.
+    private void calculationsOnHistogram(HistogramCache.Entry entry) {
+        for (int i = 0; i < mHistData.length; i++) {
+            ChannelHistograms.normalize(entry.histograms[i], mHistData[i], entry.height);
+            calculationsOnHistogram(mHistData[i]);
+        }
+    }
 
-            Bitmap histBitmap = Bitmap.createBitmap(histMatBitmap.cols(), histMatBitmap.rows(), Bitmap.Config.ARGB_8888);
-            Utils.matToBitmap(histMatBitmap, histBitmap);
-            BitmapHelper.showBitmap(this, histBitmap, mImageHistogram);
+    private int chartSize(int layoutSize, int fallback) {
+        return layoutSize > 1 ? layoutSize : fallback;
+    }
 
-            mSelectedImage.setVisibility(View.VISIBLE);
-            mImageHistogram.setVisibility(View.VISIBLE);
-        } catch (Exception e) {
-            e.printStackTrace();
+    private void showHistogram(HistogramResult result) {
+        // Don't do that at home or work it's for visualization purpose.
+        if (result.image != null) {
+            BitmapHelper.showBitmap(this, result.image, mSelectedImage);
+        } else {
+            BitmapHelper.showUri(this, result.uri, mSelectedImage);
         }
+        BitmapHelper.showBitmap(this, result.chart, mImageHistogram);
+
+        mSelectedImage.setVisibility(View.VISIBLE);
+        mImageHistogram.setVisibility(View.VISIBLE);
     }
 
-    private void calculationsOnHistogram(Mat histogram) {
-        SparseArray<ArrayList<Float>> compartments = HistogramHelper.createCompartments(histogram);
-        float sumAll = HistogramHelper.sumCompartmentsValues(compartments);
-        float averageAll = HistogramHelper.averageValueOfCompartments(compartments);
-        Log.i(TAG, "Sum: " + Core.sumElems(histogram));
+    private void calculationsOnHistogram(float[] histData) {
+        HistogramCompartments compartments = mCompartments.fill(histData);
+        float sumAll = compartments.sumAll();
+        float averageAll = compartments.averageAll();
+        double sum = 0;
+        for (float value : histData) {
+            sum += value;
+        }
+        Log.i(TAG, "Sum: " + sum);
         Log.i(TAG, "Sum of all compartments " + String.valueOf(sumAll));
         Log.i(TAG, "Average value of all compartments " + String.valueOf(averageAll));
         Log.i(TAG, " ");
 
         for (int i = 0; i < compartments.size(); i++) {
-            float sumLast = HistogramHelper.sumCompartmentValues(i, compartments);
-            float averageLast = HistogramHelper.averageValueOfCompartment(i, compartments);
-            float averagePercentageLastCompartment = HistogramHelper.averagePercentageOfCompartment(i, compartments);
-            float percentageLastCompartment = HistogramHelper.percentageOfCompartment(i, compartments);
+            float sumLast = compartments.sum(i);
+            float averageLast = compartments.average(i);
+            float averagePercentageLastCompartment = compartments.averagePercentage(i);
+            float percentageLastCompartment = compartments.percentage(i);
             Log.i(TAG, "Sum of " + (i + 1) + " compartment " + String.valueOf(sumLast));
             Log.i(TAG, "Average value of the " + (i + 1) + " compartment " + String.valueOf(averageLast));
             Log.i(TAG, "Average percentage of the " + (i + 1) + " compartment " + String.valueOf(averagePercentageLastCompartment));
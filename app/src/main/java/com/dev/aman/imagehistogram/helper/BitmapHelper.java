@@ -8,6 +8,8 @@ import android.os.Environment;
 import android.widget.ImageView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.request.RequestOptions;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -16,6 +18,9 @@ import java.io.InputStream;
 import java.io.OutputStreamWriter;
 
 public class BitmapHelper {
+
+    public static final float DEFAULT_HISTOGRAM_BIN_ERROR = 0.001f;
+
     private BitmapHelper() {
     }
 
@@ -25,13 +30,31 @@ public class BitmapHelper {
         return baos.toByteArray();
     }
 
+    /**
+     * Displays the already decoded bitmap. Glide scales it into pooled bitmaps without any encode/decode
+     * round trip, so the chart keeps its exact pixels.
+     */
     public static void showBitmap(Context context, Bitmap bitmap, ImageView imageView) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        bitmap.compress(Bitmap.CompressFormat.JPEG, 90, baos);
-        byte[] data = baos.toByteArray();
+        Glide.with(context)
+                .load(bitmap)
+                .apply(RequestOptions.diskCacheStrategyOf(DiskCacheStrategy.NONE).skipMemoryCache(true))
+                .into(imageView);
+    }
+
+    /**
+     * Displays encoded image bytes, for data that only exists in encoded form.
+     */
+    public static void showBytes(Context context, byte[] data, ImageView imageView) {
         Glide.with(context).load(data).into(imageView);
     }
 
+    /**
+     * Displays an image straight from its uri, Glide decodes it at the size of the view.
+     */
+    public static void showUri(Context context, Uri uri, ImageView imageView) {
+        Glide.with(context).load(uri).into(imageView);
+    }
+
     public static Bitmap readBitmapFromPath(Context context, Uri path) throws Exception {
         InputStream stream = context.getContentResolver().openInputStream(path);
         Bitmap bitmap = BitmapFactory.decodeStream(stream);
@@ -41,6 +64,75 @@ public class BitmapHelper {
         return bitmap;
     }
 
+    /**
+     * Decodes the image subsampled as much as possible while the expected error of every normalized
+     * histogram bin stays below {@code maxBinError} (e.g. 0.001 for 0.1%).
+     * A bin frequency estimated from n pixels has a standard error of at most 0.5 / sqrt(n),
+     * so at least 1 / (4 * maxBinError^2) pixels are kept. The decoder averages pixels when
+     * subsampling, which slightly smooths the histogram compared to the full-resolution image.
+     */
+    public static SampledBitmap readBitmapForHistogram(Context context, Uri path, float maxBinError) throws Exception {
+        return readBitmapForHistogram(context, path, readBounds(context, path), maxBinError);
+    }
+
+    /**
+     * Same as {@link #readBitmapForHistogram(Context, Uri, float)} with the bounds already read by
+     * {@link #readBounds(Context, Uri)}, the options are reused for the decode.
+     */
+    public static SampledBitmap readBitmapForHistogram(Context context, Uri path, BitmapFactory.Options options,
+                                                       float maxBinError) throws Exception {
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = histogramSampleSize(options.outWidth, options.outHeight, maxBinError);
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        InputStream stream = context.getContentResolver().openInputStream(path);
+        Bitmap bitmap = BitmapFactory.decodeStream(stream, null, options);
+        if (stream != null) {
+            stream.close();
+        }
+        return new SampledBitmap(bitmap, options.inSampleSize);
+    }
+
+    /**
+     * Reads only the image header, the size is in {@code outWidth} and {@code outHeight}.
+     */
+    public static BitmapFactory.Options readBounds(Context context, Uri path) throws Exception {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        InputStream stream = context.getContentResolver().openInputStream(path);
+        BitmapFactory.decodeStream(stream, null, options);
+        if (stream != null) {
+            stream.close();
+        }
+        return options;
+    }
+
+    public static SampledBitmap readBitmapForHistogram(Context context, Uri path) throws Exception {
+        return readBitmapForHistogram(context, path, DEFAULT_HISTOGRAM_BIN_ERROR);
+    }
+
+    public static int histogramSampleSize(int width, int height, float maxBinError) {
+        if (width <= 0 || height <= 0 || maxBinError <= 0) {
+            return 1;
+        }
+        double requiredPixels = 1 / (4.0 * maxBinError * maxBinError);
+        int sampleSize = 1;
+        // BitmapFactory rounds inSampleSize down to a power of two.
+        while ((double) (width / (sampleSize * 2)) * (height / (sampleSize * 2)) >= requiredPixels) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    public static class SampledBitmap {
+        public final Bitmap bitmap;
+        public final int sampleSize;
+
+        SampledBitmap(Bitmap bitmap, int sampleSize) {
+            this.bitmap = bitmap;
+            this.sampleSize = sampleSize;
+        }
+    }
+
     public static void writeToPublicDirectory(String filename, byte[] data, String directory, String environmentDirectory) throws Exception {
         File publicDirectory = new File(Environment.getExternalStoragePublicDirectory(environmentDirectory), directory);
         boolean result = publicDirectory.mkdirs();
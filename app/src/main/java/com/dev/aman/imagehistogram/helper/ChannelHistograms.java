@@ -0,0 +1,130 @@
+package com.dev.aman.imagehistogram.helper;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Multi-channel histograms computed in a single traversal of the image.
+ * Results are packed as {@code int[4][256]} indexed by {@link HistogramKernel#RED}, {@link HistogramKernel#GREEN},
+ * {@link HistogramKernel#BLUE} and {@link HistogramKernel#LUMA}; the luma row stays empty unless requested.
+ */
+public class ChannelHistograms {
+
+    // Pixels are pulled in stripes of whole rows so the scratch buffer stays small and cache friendly.
+    private static final int STRIPE_PIXELS = 64 * 1024;
+
+    private ChannelHistograms() {
+    }
+
+    public static int[][] compute(Bitmap bitmap, boolean withLuma) {
+        int[][] histograms = HistogramKernel.newHistograms();
+        accumulate(bitmap, 0, bitmap.getHeight(), histograms, withLuma);
+        return histograms;
+    }
+
+    /**
+     * Same result as {@link #compute(Bitmap, boolean)}, large bitmaps are split into row stripes
+     * processed by {@link ParallelHistogram} on API 21+.
+     */
+    public static int[][] computeParallel(Bitmap bitmap, boolean withLuma) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return compute(bitmap, withLuma);
+        }
+        return ParallelHistogram.compute(rows(bitmap), withLuma);
+    }
+
+    public static ParallelHistogram.Rows rows(final Bitmap bitmap) {
+        return new ParallelHistogram.Rows() {
+            @Override
+            public int width() {
+                return bitmap.getWidth();
+            }
+
+            @Override
+            public int height() {
+                return bitmap.getHeight();
+            }
+
+            @Override
+            public void accumulate(int top, int bottom, int[][] histograms, boolean withLuma) {
+                ChannelHistograms.accumulate(bitmap, top, bottom, histograms, withLuma);
+            }
+        };
+    }
+
+    public static void accumulate(Bitmap bitmap, int top, int bottom, int[][] histograms, boolean withLuma) {
+        accumulate(bitmap, bitmap.getWidth(), top, bottom, histograms, withLuma);
+    }
+
+    /**
+     * Adds the pixels of columns {@code <0;width)} and rows {@code <top;bottom)}.
+     */
+    public static void accumulate(Bitmap bitmap, int width, int top, int bottom, int[][] histograms, boolean withLuma) {
+        int stripeRows = Math.max(1, STRIPE_PIXELS / width);
+        int[] stripe = new int[width * Math.min(stripeRows, bottom - top)];
+        for (int y = top; y < bottom; y += stripeRows) {
+            int rows = Math.min(stripeRows, bottom - y);
+            bitmap.getPixels(stripe, 0, width, 0, y, width, rows);
+            HistogramKernel.accumulate(stripe, 0, width * rows, histograms, withLuma);
+        }
+    }
+
+    public static int[][] compute(Mat rgba, boolean withLuma) {
+        if (rgba.type() != CvType.CV_8UC4) {
+            throw new IllegalArgumentException("Expected CV_8UC4 Mat, got " + CvType.typeToString(rgba.type()));
+        }
+        int[][] histograms = HistogramKernel.newHistograms();
+        // Mats allocated over a direct buffer are read in place, without the stripe copies.
+        ByteBuffer data = rgba.getByteBuffer();
+        if (data != null) {
+            HistogramKernel.accumulate(data, histograms, withLuma);
+            return histograms;
+        }
+        int rowBytes = rgba.cols() * 4;
+        int stripeRows = Math.max(1, STRIPE_PIXELS / Math.max(1, rgba.cols()));
+        byte[] stripe = new byte[rowBytes * Math.min(stripeRows, rgba.rows())];
+        for (int y = 0; y < rgba.rows(); y += stripeRows) {
+            int rows = Math.min(stripeRows, rgba.rows() - y);
+            if (rows * rowBytes != stripe.length) {
+                stripe = new byte[rows * rowBytes];
+            }
+            rgba.get(y, 0, stripe);
+            HistogramKernel.accumulate(ByteBuffer.wrap(stripe), histograms, withLuma);
+        }
+        return histograms;
+    }
+
+    /**
+     * Copies a channel into {@code target} scaled so its maximum equals {@code alpha},
+     * the same result as Core.normalize with NORM_INF on the calcHist output.
+     */
+    public static float[] normalize(int[] histogram, float[] target, float alpha) {
+        int max = 0;
+        for (int value : histogram) {
+            max = Math.max(max, value);
+        }
+        float scale = max > 0 ? alpha / max : 0f;
+        for (int i = 0; i < histogram.length; i++) {
+            target[i] = histogram[i] * scale;
+        }
+        return target;
+    }
+
+    /**
+     * Copies one channel into a 256x1 CV_32F Mat, the layout Imgproc.calcHist produces.
+     */
+    public static Mat toMat(int[] histogram, Mat target) {
+        float[] histData = new float[histogram.length];
+        for (int i = 0; i < histogram.length; i++) {
+            histData[i] = histogram[i];
+        }
+        target.create(histogram.length, 1, CvType.CV_32F);
+        target.put(0, 0, histData);
+        return target;
+    }
+}
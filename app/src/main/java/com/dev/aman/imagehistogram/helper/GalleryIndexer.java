@@ -0,0 +1,332 @@
+package com.dev.aman.imagehistogram.helper;
+
+import android.content.ContentUris;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.BatteryManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import java.util.Locale;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Histograms every image of MediaStore into a {@link HistogramStore}.
+ * Images are decoded subsampled and processed on a pool with one worker per core, every result is
+ * appended to the store right away, so an interrupted run resumes by skipping the keys already stored.
+ * While the device runs on battery only one worker is active, while the battery is hot the workers pause.
+ * Progress (images/s and the time spent per stage) is reported on the UI thread.
+ */
+public class GalleryIndexer {
+
+    private static final String TAG = GalleryIndexer.class.getSimpleName();
+    private static final long REPORT_INTERVAL_MS = 500;
+    private static final long THROTTLE_CHECK_MS = 5000;
+    private static final int FORCE_EVERY = 64;
+    // Battery temperature in tenths of a degree Celsius. The thermal status API needs SDK 29.
+    private static final int HOT_TEMPERATURE = 420;
+    private static final int COOL_TEMPERATURE = 390;
+
+    public static final int STAGE_QUERY = 0;
+    public static final int STAGE_DECODE = 1;
+    public static final int STAGE_HISTOGRAM = 2;
+    public static final int STAGE_PERSIST = 3;
+    public static final int STAGES_COUNT = 4;
+
+    public interface Listener {
+        void onProgress(Progress progress);
+
+        void onFinished(Progress progress);
+    }
+
+    public static class Progress {
+        public final int total;
+        public final int indexed;
+        public final int skipped;
+        public final int failed;
+        public final long elapsedMs;
+        public final long[] stageNanos;
+        public final boolean throttled;
+
+        Progress(int total, int indexed, int skipped, int failed, long elapsedMs, long[] stageNanos, boolean throttled) {
+            this.total = total;
+            this.indexed = indexed;
+            this.skipped = skipped;
+            this.failed = failed;
+            this.elapsedMs = elapsedMs;
+            this.stageNanos = stageNanos;
+            this.throttled = throttled;
+        }
+
+        public float imagesPerSecond() {
+            return elapsedMs > 0 ? indexed * 1000f / elapsedMs : 0f;
+        }
+
+        /**
+         * Average milliseconds per indexed image spent in {@code stage}, summed over the workers.
+         */
+        public float stageMillisPerImage(int stage) {
+            return indexed > 0 ? stageNanos[stage] / 1e6f / indexed : 0f;
+        }
+
+        @Override
+        public String toString() {
+            return indexed + "/" + total + " indexed, " + skipped + " skipped, " + failed + " failed, "
+                    + String.format(Locale.US, "%.1f images/s, decode %.1f ms, histogram %.1f ms, persist %.2f ms",
+                    imagesPerSecond(), stageMillisPerImage(STAGE_DECODE),
+                    stageMillisPerImage(STAGE_HISTOGRAM), stageMillisPerImage(STAGE_PERSIST))
+                    + (throttled ? " (throttled)" : "");
+        }
+    }
+
+    private final Context context;
+    private final HistogramStore store;
+    private final int workers;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final AtomicInteger indexed = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong[] stageNanos = new AtomicLong[STAGES_COUNT];
+    private final AtomicLong lastReport = new AtomicLong();
+    private volatile int total;
+    private volatile long startTime;
+    private volatile boolean cancelled;
+    private Thread coordinator;
+
+    // Throttling state, guarded by "this".
+    private int active;
+    private int allowed;
+    private boolean hot;
+    private long lastThrottleCheck;
+
+    public GalleryIndexer(Context context, HistogramStore store) {
+        this(context, store, Runtime.getRuntime().availableProcessors());
+    }
+
+    public GalleryIndexer(Context context, HistogramStore store, int workers) {
+        this.context = context.getApplicationContext();
+        this.store = store;
+        this.workers = Math.max(1, workers);
+        for (int i = 0; i < STAGES_COUNT; i++) {
+            stageNanos[i] = new AtomicLong();
+        }
+    }
+
+    public synchronized void start(final Listener listener) {
+        if (coordinator != null) {
+            throw new IllegalStateException("Indexer already started");
+        }
+        coordinator = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runIndex(listener);
+            }
+        }, "GalleryIndexer");
+        coordinator.setPriority(Thread.MIN_PRIORITY);
+        coordinator.start();
+    }
+
+    /**
+     * Stops after the images being processed, the next run resumes where this one stopped.
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+        notifyAll();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private void runIndex(final Listener listener) {
+        startTime = SystemClock.elapsedRealtime();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "GalleryIndexer-" + counter.incrementAndGet());
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        // Bounds the images handed to the pool, the cursor is read as workers free up.
+        final Semaphore inFlight = new Semaphore(workers * 2);
+        Cursor cursor = null;
+        try {
+            long start = System.nanoTime();
+            cursor = context.getContentResolver().query(MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
+                    new String[]{MediaStore.Images.Media._ID, MediaStore.Images.Media.SIZE, MediaStore.Images.Media.DATE_MODIFIED},
+                    null, null, MediaStore.Images.Media._ID);
+            stageNanos[STAGE_QUERY].addAndGet(System.nanoTime() - start);
+            if (cursor == null) {
+                return;
+            }
+            total = cursor.getCount();
+            int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media._ID);
+            int sizeColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.SIZE);
+            int modifiedColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.DATE_MODIFIED);
+            while (!cancelled && cursor.moveToNext()) {
+                final long id = cursor.getLong(idColumn);
+                final long modified = cursor.getLong(modifiedColumn);
+                final Uri uri = ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, id);
+                final String key = HistogramCache.key(uri, cursor.getLong(sizeColumn), modified);
+                if (store.contains(key)) {
+                    skipped.incrementAndGet();
+                    continue;
+                }
+                inFlight.acquire();
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            indexImage(uri, key, id, modified);
+                        } finally {
+                            inFlight.release();
+                        }
+                        report(listener, false);
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            Log.e(TAG, "Indexing failed", e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            store.force();
+            report(listener, true);
+        }
+    }
+
+    private void indexImage(Uri uri, String key, long id, long modified) {
+        if (!acquireWorker()) {
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            BitmapHelper.SampledBitmap sampled = BitmapHelper.readBitmapForHistogram(context, uri);
+            long decoded = System.nanoTime();
+            stageNanos[STAGE_DECODE].addAndGet(decoded - start);
+            if (sampled.bitmap == null) {
+                failed.incrementAndGet();
+                return;
+            }
+            int[][] histograms = ChannelHistograms.compute(sampled.bitmap, false);
+            int width = sampled.bitmap.getWidth();
+            int height = sampled.bitmap.getHeight();
+            sampled.bitmap.recycle();
+            long computed = System.nanoTime();
+            stageNanos[STAGE_HISTOGRAM].addAndGet(computed - decoded);
+
+            store.append(key, id, modified, width, height, sampled.sampleSize, histograms);
+            if (indexed.incrementAndGet() % FORCE_EVERY == 0) {
+                store.force();
+            }
+            stageNanos[STAGE_PERSIST].addAndGet(System.nanoTime() - computed);
+        } catch (Exception e) {
+            Log.w(TAG, "Cannot index " + uri, e);
+            failed.incrementAndGet();
+        } finally {
+            releaseWorker();
+        }
+    }
+
+    // Blocks while the throttle allows fewer active workers, returns false once cancelled.
+    private synchronized boolean acquireWorker() {
+        while (!cancelled) {
+            updateThrottle();
+            if (active < allowed) {
+                active++;
+                return true;
+            }
+            try {
+                wait(THROTTLE_CHECK_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private synchronized void releaseWorker() {
+        active--;
+        notifyAll();
+    }
+
+    private void updateThrottle() {
+        long now = SystemClock.elapsedRealtime();
+        if (lastThrottleCheck != 0 && now - lastThrottleCheck < THROTTLE_CHECK_MS) {
+            return;
+        }
+        lastThrottleCheck = now;
+        Intent battery = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery == null) {
+            allowed = workers;
+            return;
+        }
+        int temperature = battery.getIntExtra(BatteryManager.EXTRA_TEMPERATURE, 0);
+        boolean charging = battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+        // Once hot, wait for the battery to cool down a few degrees before resuming.
+        hot = hot ? temperature > COOL_TEMPERATURE : temperature >= HOT_TEMPERATURE;
+        if (hot) {
+            allowed = 0;
+        } else {
+            allowed = charging ? workers : 1;
+        }
+    }
+
+    private synchronized boolean isThrottled() {
+        return allowed < workers;
+    }
+
+    private void report(final Listener listener, final boolean finished) {
+        long now = SystemClock.elapsedRealtime();
+        long last = lastReport.get();
+        if (!finished && (now - last < REPORT_INTERVAL_MS || !lastReport.compareAndSet(last, now))) {
+            return;
+        }
+        long[] nanos = new long[STAGES_COUNT];
+        for (int i = 0; i < STAGES_COUNT; i++) {
+            nanos[i] = stageNanos[i].get();
+        }
+        final Progress progress = new Progress(total, indexed.get(), skipped.get(), failed.get(),
+                now - startTime, nanos, isThrottled());
+        if (finished) {
+            Log.i(TAG, "Finished: " + progress);
+        }
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (finished) {
+                    listener.onFinished(progress);
+                } else {
+                    listener.onProgress(progress);
+                }
+            }
+        });
+    }
+}
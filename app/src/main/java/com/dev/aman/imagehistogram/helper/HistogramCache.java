@@ -0,0 +1,305 @@
+package com.dev.aman.imagehistogram.helper;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.provider.MediaStore;
+import android.provider.OpenableColumns;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Two-level cache of histogram results for images that were already analysed.
+ * The first level is an in-memory LRU of histograms and rendered charts bounded by a byte budget,
+ * the second a compact binary file per image in the app cache directory, also bounded by a byte budget.
+ * Entries are keyed by URI + size + last modification time, or by a content hash when the provider
+ * doesn't report them.
+ */
+public class HistogramCache {
+
+    private static final String TAG = HistogramCache.class.getSimpleName();
+    private static final String DIRECTORY = "histograms";
+    private static final int MAGIC = 0x48495354; // "HIST"
+    private static final int VERSION = 1;
+
+    private final LruCache<String, Entry> memory;
+    private final File directory;
+    private final long diskBytes;
+
+    public static class Entry {
+        public final int[][] histograms;
+        public final int width;
+        public final int height;
+        public final int sampleSize;
+        private Bitmap chart;
+
+        public Entry(int[][] histograms, int width, int height, int sampleSize) {
+            this.histograms = histograms;
+            this.width = width;
+            this.height = height;
+            this.sampleSize = sampleSize;
+        }
+
+        public Entry withChart(Bitmap chart) {
+            Entry entry = new Entry(histograms, width, height, sampleSize);
+            entry.chart = chart;
+            return entry;
+        }
+
+        public Bitmap chart(int chartWidth, int chartHeight) {
+            if (chart != null && chart.getWidth() == chartWidth && chart.getHeight() == chartHeight) {
+                return chart;
+            }
+            return null;
+        }
+
+        int byteCount() {
+            int bytes = histograms.length * HistogramKernel.BINS * 4;
+            return chart != null ? bytes + chart.getByteCount() : bytes;
+        }
+    }
+
+    public HistogramCache(Context context, int memoryBytes, long diskBytes) {
+        this.memory = new LruCache<String, Entry>(memoryBytes) {
+            @Override
+            protected int sizeOf(String key, Entry entry) {
+                return entry.byteCount();
+            }
+        };
+        this.directory = new File(context.getCacheDir(), DIRECTORY);
+        this.diskBytes = diskBytes;
+    }
+
+    public Entry get(String key) {
+        Entry entry = memory.get(key);
+        if (entry != null) {
+            return entry;
+        }
+        entry = readFromDisk(key);
+        if (entry != null) {
+            memory.put(key, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Stores the entry in memory (chart included) and its histograms on disk.
+     */
+    public void put(String key, Entry entry) {
+        Entry previous = memory.put(key, entry);
+        if (previous == null || previous.histograms != entry.histograms) {
+            writeToDisk(key, entry);
+        }
+    }
+
+    public void clear() {
+        memory.evictAll();
+        synchronized (this) {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    public static String key(Context context, Uri uri) throws IOException {
+        long size = -1;
+        long modified = -1;
+        if (ContentResolver.SCHEME_FILE.equals(uri.getScheme()) && uri.getPath() != null) {
+            File file = new File(uri.getPath());
+            size = file.length();
+            modified = file.lastModified();
+        } else {
+            Cursor cursor = null;
+            try {
+                cursor = context.getContentResolver().query(uri, null, null, null, null);
+                if (cursor != null && cursor.moveToFirst()) {
+                    int sizeIndex = cursor.getColumnIndex(OpenableColumns.SIZE);
+                    int modifiedIndex = cursor.getColumnIndex(MediaStore.MediaColumns.DATE_MODIFIED);
+                    if (sizeIndex >= 0 && !cursor.isNull(sizeIndex)) {
+                        size = cursor.getLong(sizeIndex);
+                    }
+                    if (modifiedIndex >= 0 && !cursor.isNull(modifiedIndex)) {
+                        modified = cursor.getLong(modifiedIndex);
+                    }
+                }
+            } catch (Exception e) {
+                Log.w(TAG, "No metadata for " + uri, e);
+            } finally {
+                if (cursor != null) {
+                    cursor.close();
+                }
+            }
+        }
+        if (size >= 0 && modified >= 0) {
+            return key(uri, size, modified);
+        }
+        return "sha1:" + contentHash(context, uri);
+    }
+
+    public static String key(Uri uri, long size, long modified) {
+        return uri + "|" + size + "|" + modified;
+    }
+
+    private static String contentHash(Context context, Uri uri) throws IOException {
+        InputStream stream = context.getContentResolver().openInputStream(uri);
+        if (stream == null) {
+            throw new IOException("Cannot open " + uri);
+        }
+        try {
+            MessageDigest digest = sha1();
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            return hex(digest.digest());
+        } finally {
+            stream.close();
+        }
+    }
+
+    private synchronized Entry readFromDisk(String key) {
+        File file = fileFor(key);
+        if (!file.exists()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !key.equals(in.readUTF())) {
+                return null;
+            }
+            int width = in.readInt();
+            int height = in.readInt();
+            int sampleSize = in.readInt();
+            int channels = in.readInt();
+            int[][] histograms = new int[channels][HistogramKernel.BINS];
+            for (int[] histogram : histograms) {
+                for (int i = 0; i < histogram.length; i++) {
+                    histogram[i] = in.readInt();
+                }
+            }
+            file.setLastModified(System.currentTimeMillis());
+            return new Entry(histograms, width, height, sampleSize);
+        } catch (IOException e) {
+            Log.w(TAG, "Dropping unreadable cache file " + file, e);
+            file.delete();
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private synchronized void writeToDisk(String key, Entry entry) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            return;
+        }
+        File file = fileFor(key);
+        File tmp = new File(directory, file.getName() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(key);
+            out.writeInt(entry.width);
+            out.writeInt(entry.height);
+            out.writeInt(entry.sampleSize);
+            out.writeInt(entry.histograms.length);
+            for (int[] histogram : entry.histograms) {
+                for (int value : histogram) {
+                    out.writeInt(value);
+                }
+            }
+            out.close();
+            out = null;
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot write cache file " + file, e);
+            tmp.delete();
+        } finally {
+            closeQuietly(out);
+        }
+        trimDisk();
+    }
+
+    // Deletes the least recently used files until the directory fits in the disk budget.
+    private void trimDisk() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= diskBytes) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long diff = a.lastModified() - b.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+        for (int i = 0; i < files.length && total > diskBytes; i++) {
+            long length = files[i].length();
+            if (files[i].delete()) {
+                total -= length;
+            }
+        }
+    }
+
+    private File fileFor(String key) {
+        return new File(directory, hex(sha1().digest(key.getBytes(StandardCharsets.UTF_8))) + ".hist");
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static void closeQuietly(java.io.Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Ignored.
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.dev.aman.imagehistogram.helper;
+
+import org.opencv.core.Mat;
+
+/**
+ * Primitive-array backed compartments of a histogram.
+ * All per-compartment statistics are computed in a single pass by {@link #fill(float[])},
+ * range queries are answered in O(1) from prefix sums.
+ */
+public class HistogramCompartments {
+
+    public static final int DEFAULT_BINS_COUNT = 256;
+    public static final int DEFAULT_COMPARTMENTS_COUNT = 5;
+
+    private final int binsCount;
+    private final int compartmentsCount;
+    private final int interval;
+
+    private final float[] histData;
+    private final float[] sums;
+    private final float[] maxValues;
+    private final float[] variances;
+    // prefixSums[i] is the sum of compartments <0;i), prefixSums[compartmentsCount] is the total.
+    private final double[] prefixSums;
+    private float varianceAll;
+
+    public HistogramCompartments() {
+        this(DEFAULT_BINS_COUNT, DEFAULT_COMPARTMENTS_COUNT);
+    }
+
+    public HistogramCompartments(int binsCount, int compartmentsCount) {
+        if (binsCount <= 0 || compartmentsCount <= 0 || compartmentsCount > binsCount) {
+            throw new IllegalArgumentException("binsCount > 0 and compartmentsCount ∈ <1;" + binsCount + ">");
+        }
+        this.binsCount = binsCount;
+        this.compartmentsCount = compartmentsCount;
+        this.interval = binsCount / compartmentsCount;
+        this.histData = new float[binsCount];
+        this.sums = new float[compartmentsCount];
+        this.maxValues = new float[compartmentsCount];
+        this.variances = new float[compartmentsCount];
+        this.prefixSums = new double[compartmentsCount + 1];
+    }
+
+    public static HistogramCompartments from(Mat histogram) {
+        HistogramCompartments compartments = new HistogramCompartments();
+        compartments.fill(histogram);
+        return compartments;
+    }
+
+    public static HistogramCompartments from(float[] histData) {
+        HistogramCompartments compartments = new HistogramCompartments();
+        compartments.fill(histData);
+        return compartments;
+    }
+
+    public HistogramCompartments fill(Mat histogram) {
+        histogram.get(0, 0, histData);
+        return compute();
+    }
+
+    public HistogramCompartments fill(float[] data) {
+        if (data.length < binsCount) {
+            throw new ArrayIndexOutOfBoundsException("data.length >= " + binsCount);
+        }
+        System.arraycopy(data, 0, histData, 0, binsCount);
+        return compute();
+    }
+
+    public HistogramCompartments fill(int[] data) {
+        if (data.length < binsCount) {
+            throw new ArrayIndexOutOfBoundsException("data.length >= " + binsCount);
+        }
+        for (int i = 0; i < binsCount; i++) {
+            histData[i] = data[i];
+        }
+        return compute();
+    }
+
+    private HistogramCompartments compute() {
+        prefixSums[0] = 0;
+        double squareSumAll = 0;
+        for (int i = 0; i < compartmentsCount; i++) {
+            int start = interval * i;
+            int end = start + interval;
+            double sum = 0;
+            double squareSum = 0;
+            float max = histData[start];
+            for (int j = start; j < end; j++) {
+                float value = histData[j];
+                sum += value;
+                squareSum += (double) value * value;
+                if (value > max) {
+                    max = value;
+                }
+            }
+            double average = sum / interval;
+            sums[i] = (float) sum;
+            maxValues[i] = max;
+            variances[i] = (float) Math.max(0, squareSum / interval - average * average);
+            prefixSums[i + 1] = prefixSums[i] + sum;
+            squareSumAll += squareSum;
+        }
+
+        // Same definition as HistogramHelper.varianceCompartments: deviation from the average value of compartments.
+        double total = prefixSums[compartmentsCount];
+        double averageAll = total / compartmentsCount;
+        int size = interval * compartmentsCount;
+        varianceAll = (float) Math.max(0, (squareSumAll - 2 * averageAll * total) / size + averageAll * averageAll);
+        return this;
+    }
+
+    public int size() {
+        return compartmentsCount;
+    }
+
+    public int interval() {
+        return interval;
+    }
+
+    public float maxValue(int index) {
+        checkIndex(index);
+        return maxValues[index];
+    }
+
+    public float sum(int index) {
+        checkIndex(index);
+        return sums[index];
+    }
+
+    public float sumAll() {
+        return (float) prefixSums[compartmentsCount];
+    }
+
+    public float average(int index) {
+        checkIndex(index);
+        return sums[index] / interval;
+    }
+
+    public float averageAll() {
+        return (float) (prefixSums[compartmentsCount] / compartmentsCount);
+    }
+
+    public float percentage(int index) {
+        checkIndex(index);
+        return (float) (sums[index] * 100 / prefixSums[compartmentsCount]);
+    }
+
+    public float percentageRange(int start, int end) {
+        checkIndex(start);
+        checkIndex(end);
+        if (start > end) {
+            throw new IllegalArgumentException("start <= end");
+        }
+        return (float) ((prefixSums[end + 1] - prefixSums[start]) * 100 / prefixSums[compartmentsCount]);
+    }
+
+    public float averagePercentage(int index) {
+        checkIndex(index);
+        return average(index) * 100 / averageAll();
+    }
+
+    public float variance(int index) {
+        checkIndex(index);
+        return variances[index];
+    }
+
+    public float varianceAll() {
+        return varianceAll;
+    }
+
+    public float value(int index, int position) {
+        checkIndex(index);
+        if (position < 0 || position >= interval) {
+            throw new ArrayIndexOutOfBoundsException("position ∈ <0;" + (interval - 1) + ">");
+        }
+        return histData[interval * index + position];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= compartmentsCount) {
+            throw new ArrayIndexOutOfBoundsException("index ∈ <0;" + (compartmentsCount - 1) + ">");
+        }
+    }
+}
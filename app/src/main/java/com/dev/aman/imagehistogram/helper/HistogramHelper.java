@@ -1,144 +1,95 @@
 package com.dev.aman.imagehistogram.helper;
 
-import android.util.Log;
 import android.util.SparseArray;
 
 import org.opencv.core.Mat;
 
 import java.util.ArrayList;
-import java.util.Collections;
 
+/**
+ * SparseArray based compartments API, kept for compatibility.
+ * Every method is a thin adapter over {@link HistogramCompartments}, which should be preferred in new code.
+ */
 public class HistogramHelper {
 
-    private static final String TAG = HistogramHelper.class.getSimpleName();
-
     private HistogramHelper() {
 
     }
 
     public static SparseArray<ArrayList<Float>> createCompartments(Mat histogram) {
-        int binsCount = 256;
-        float[] histData = new float[binsCount];
-        histogram.get(0, 0, histData);
-
-        int compartmentsCount = 5;
-        int interval = binsCount / compartmentsCount;
+        return toSparseArray(HistogramCompartments.from(histogram));
+    }
 
+    public static SparseArray<ArrayList<Float>> toSparseArray(HistogramCompartments source) {
         SparseArray<ArrayList<Float>> compartments = new SparseArray<>();
-        for (int i = 0; i < compartmentsCount; i++) {
-            int start = interval * i;
-            int end = start + interval;
-            ArrayList<Float> tmp = new ArrayList<>();
-            for (int j = start; j < end; j++) {
-                tmp.add(histData[j]);
+        for (int i = 0; i < source.size(); i++) {
+            ArrayList<Float> tmp = new ArrayList<>(source.interval());
+            for (int j = 0; j < source.interval(); j++) {
+                tmp.add(source.value(i, j));
             }
             compartments.put(i, tmp);
         }
         return compartments;
     }
 
+    public static HistogramCompartments fromSparseArray(SparseArray<ArrayList<Float>> compartments) {
+        int interval = compartments.get(0).size();
+        float[] histData = new float[interval * compartments.size()];
+        for (int i = 0; i < compartments.size(); i++) {
+            ArrayList<Float> values = compartments.get(i);
+            for (int j = 0; j < interval; j++) {
+                histData[interval * i + j] = values.get(j);
+            }
+        }
+        return new HistogramCompartments(histData.length, compartments.size()).fill(histData);
+    }
+
     public static SparseArray<Float> compartmentsMaxValues(SparseArray<ArrayList<Float>> compartments) {
+        HistogramCompartments source = fromSparseArray(compartments);
         SparseArray<Float> maxValues = new SparseArray<>();
-        for (int i = 0; i < compartments.size(); i++) {
-            maxValues.put(i, Collections.max(compartments.get(i)));
+        for (int i = 0; i < source.size(); i++) {
+            maxValues.put(i, source.maxValue(i));
         }
         return maxValues;
     }
 
     public static float compartmentMaxValue(int index, SparseArray<ArrayList<Float>> compartments) {
-        if (index < 0 || index > compartments.size()) {
-            throw new ArrayIndexOutOfBoundsException("index ∈ <0;" + (compartments.size() - 1) + ">");
-        }
-        return Collections.max(compartments.get(index));
+        return fromSparseArray(compartments).maxValue(index);
     }
 
     public static float sumCompartmentValues(int index, SparseArray<ArrayList<Float>> compartments) {
-        float sum = 0L;
-        if (index < 0 || index > compartments.size()) {
-            throw new ArrayIndexOutOfBoundsException("index ∈ <0;" + (compartments.size() - 1) + ">");
-        } else {
-            for (int i = 0; i < compartments.get(index).size(); i++) {
-                sum += compartments.get(index).get(i);
-            }
-        }
-        return sum;
+        return fromSparseArray(compartments).sum(index);
     }
 
     public static float sumCompartmentsValues(SparseArray<ArrayList<Float>> compartments) {
-        float sum = 0L;
-        for (int i = 0; i < compartments.size(); i++) {
-            for (int j = 0; j < compartments.get(i).size(); j++) {
-                sum += compartments.get(i).get(j);
-            }
-        }
-        return sum;
+        return fromSparseArray(compartments).sumAll();
     }
 
     public static float averageValueOfCompartment(int index, SparseArray<ArrayList<Float>> compartments) {
-        if (index < 0 || index > compartments.size()) {
-            throw new ArrayIndexOutOfBoundsException("index ∈ <0;" + (compartments.size() - 1) + ">");
-        } else {
-            return sumCompartmentValues(index, compartments) / compartments.get(index).size();
-        }
+        return fromSparseArray(compartments).average(index);
     }
 
     public static float averageValueOfCompartments(SparseArray<ArrayList<Float>> compartments) {
-        return sumCompartmentsValues(compartments) / compartments.size();
+        return fromSparseArray(compartments).averageAll();
     }
 
     public static float percentageOfCompartment(int index, SparseArray<ArrayList<Float>> compartments) {
-        if (index < 0 || index > compartments.size()) {
-            throw new ArrayIndexOutOfBoundsException("index ∈ <0;" + (compartments.size() - 1) + ">");
-        } else {
-            return (sumCompartmentValues(index, compartments) * 100) / sumCompartmentsValues(compartments);
-        }
+        return fromSparseArray(compartments).percentage(index);
     }
 
     public static float percentageRangeOfCompartments(int start, int end, SparseArray<ArrayList<Float>> compartments) {
-        if ((start < 0 || start > compartments.size()) && (end < 0 || end > compartments.size())) {
-            throw new ArrayIndexOutOfBoundsException("start ∈ <0;" + (compartments.size() - 1) + "> and end ∈ <0;\" + (compartments.size() - 1) + \">");
-        } else {
-            float sum = 0L;
-            for (int i = start; i <= end; i++) {
-                sum += sumCompartmentValues(i, compartments);
-            }
-            return (sum * 100) / sumCompartmentsValues(compartments);
-        }
+        return fromSparseArray(compartments).percentageRange(start, end);
     }
 
     public static float averagePercentageOfCompartment(int index, SparseArray<ArrayList<Float>> compartments) {
-        if (index < 0 || index > compartments.size()) {
-            throw new ArrayIndexOutOfBoundsException("index ∈ <0;" + (compartments.size() - 1) + ">");
-        } else {
-            return (averageValueOfCompartment(index, compartments) * 100) / averageValueOfCompartments(compartments);
-        }
+        return fromSparseArray(compartments).averagePercentage(index);
     }
 
     public static float varianceCompartments(SparseArray<ArrayList<Float>> compartments) {
-        float variance = 0f;
-        float average = averageValueOfCompartments(compartments);
-        int size = 0;
-        for (int i = 0; i < compartments.size(); i++) {
-            for (int j = 0; j < compartments.get(i).size(); j++) {
-                variance += (compartments.get(i).get(j) - average) * (compartments.get(i).get(j) - average);
-            }
-            size += compartments.get(i).size();
-        }
-        Log.i(TAG, "");
-        return variance / size;
+        return fromSparseArray(compartments).varianceAll();
     }
 
     public static float varianceCompartment(int index, SparseArray<ArrayList<Float>> compartments) {
-        float variance = 0f;
-        float average = averageValueOfCompartment(index, compartments);
-        if (index < 0 || index > compartments.size()) {
-            throw new ArrayIndexOutOfBoundsException("index ∈ <0;" + (compartments.size() - 1) + ">");
-        } else {
-            for (int j = 0; j < compartments.get(index).size(); j++) {
-                variance += (compartments.get(index).get(j) - average) * (compartments.get(index).get(j) - average);
-            }
-            Log.i(TAG, "");
-            return variance / compartments.get(index).size();
-        }
+        return fromSparseArray(compartments).variance(index);
     }
 }
@@ -0,0 +1,136 @@
+package com.dev.aman.imagehistogram.helper;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs histogram jobs on a background thread and delivers results on the UI thread.
+ * Submitting a job supersedes the previous one: a pending job is dropped, a running job is
+ * cancelled and its result is never delivered. Jobs should call {@link Handle#throwIfCancelled()}
+ * between expensive stages so superseded work stops early.
+ */
+public class HistogramJobs {
+
+    public interface Job<T> {
+        T execute(Handle handle) throws Exception;
+    }
+
+    public interface Callback<T> {
+        void onSuccess(T result);
+
+        void onFailure(Exception e);
+    }
+
+    public static class CancelledException extends Exception {
+        CancelledException() {
+            super("Histogram job cancelled");
+        }
+    }
+
+    public static class Handle {
+        private volatile boolean cancelled;
+        private Future<?> future;
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public void throwIfCancelled() throws CancelledException {
+            if (cancelled) {
+                throw new CancelledException();
+            }
+        }
+
+        public synchronized void cancel() {
+            cancelled = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+
+        private synchronized void setFuture(Future<?> future) {
+            this.future = future;
+            if (cancelled) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    private final ExecutorService executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private Handle current;
+
+    public HistogramJobs() {
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "HistogramJobs");
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            }
+        });
+    }
+
+    public synchronized <T> Handle submit(final Job<T> job, final Callback<T> callback) {
+        if (current != null) {
+            current.cancel();
+        }
+        final Handle handle = new Handle();
+        current = handle;
+        handle.setFuture(executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                if (handle.isCancelled()) {
+                    return;
+                }
+                try {
+                    deliverSuccess(handle, callback, job.execute(handle));
+                } catch (CancelledException e) {
+                    // Superseded, nothing to deliver.
+                } catch (Exception e) {
+                    deliverFailure(handle, callback, e);
+                }
+            }
+        }));
+        return handle;
+    }
+
+    public synchronized void cancel() {
+        if (current != null) {
+            current.cancel();
+            current = null;
+        }
+    }
+
+    public synchronized void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+
+    private <T> void deliverSuccess(final Handle handle, final Callback<T> callback, final T result) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!handle.isCancelled()) {
+                    callback.onSuccess(result);
+                }
+            }
+        });
+    }
+
+    private <T> void deliverFailure(final Handle handle, final Callback<T> callback, final Exception e) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!handle.isCancelled()) {
+                    callback.onFailure(e);
+                }
+            }
+        });
+    }
+}
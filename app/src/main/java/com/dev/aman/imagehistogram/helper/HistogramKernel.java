@@ -0,0 +1,196 @@
+package com.dev.aman.imagehistogram.helper;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Pure Java histogram kernel for 8-bit ARGB/RGBA pixel buffers.
+ * Fills the red, green, blue and (optionally) luma histograms in a single fused pass.
+ * Counts are identical to Imgproc.calcHist on an RGBA Mat, luma matches
+ * Imgproc.cvtColor(COLOR_RGBA2GRAY) followed by calcHist.
+ * No Android or native classes are used, so it runs on a plain JVM.
+ */
+public final class HistogramKernel {
+
+    public static final int BINS = 256;
+    public static final int CHANNELS = 4;
+
+    public static final int RED = 0;
+    public static final int GREEN = 1;
+    public static final int BLUE = 2;
+    public static final int LUMA = 3;
+
+    // Fixed-point coefficients used by OpenCV for RGB -> gray (yuv_shift = 14).
+    private static final int R2Y = 4899;
+    private static final int G2Y = 9617;
+    private static final int B2Y = 1868;
+    private static final int Y_SHIFT = 14;
+    private static final int Y_ROUND = 1 << (Y_SHIFT - 1);
+
+    // Consecutive pixels go to different partial tables, so repeated values don't serialize on one counter.
+    private static final int LANES = 4;
+    private static final int LANE_SIZE = CHANNELS * BINS;
+
+    private static final ThreadLocal<int[]> PARTIAL_BINS = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[LANES * LANE_SIZE];
+        }
+    };
+
+    private HistogramKernel() {
+    }
+
+    public static int[][] newHistograms() {
+        return new int[CHANNELS][BINS];
+    }
+
+    public static void clear(int[][] histograms) {
+        for (int[] histogram : histograms) {
+            Arrays.fill(histogram, 0);
+        }
+    }
+
+    public static int luma(int r, int g, int b) {
+        return (r * R2Y + g * G2Y + b * B2Y + Y_ROUND) >> Y_SHIFT;
+    }
+
+    public static int[][] compute(int[] argb, boolean withLuma) {
+        int[][] histograms = newHistograms();
+        accumulate(argb, 0, argb.length, histograms, withLuma);
+        return histograms;
+    }
+
+    /**
+     * Adds {@code length} ARGB pixels (as returned by Bitmap.getPixels) starting at {@code offset}
+     * to {@code histograms}, which must be at least {@code int[3][256]} or {@code int[4][256]} with luma.
+     */
+    public static void accumulate(int[] argb, int offset, int length, int[][] histograms, boolean withLuma) {
+        if (offset < 0 || length < 0 || offset + length > argb.length) {
+            throw new ArrayIndexOutOfBoundsException("offset=" + offset + ", length=" + length + ", size=" + argb.length);
+        }
+        int[] partial = PARTIAL_BINS.get();
+        int end = offset + length;
+        int unrolledEnd = offset + (length & ~(LANES - 1));
+        int i = offset;
+        if (withLuma) {
+            for (; i < unrolledEnd; i += LANES) {
+                addArgbWithLuma(partial, 0, argb[i]);
+                addArgbWithLuma(partial, LANE_SIZE, argb[i + 1]);
+                addArgbWithLuma(partial, 2 * LANE_SIZE, argb[i + 2]);
+                addArgbWithLuma(partial, 3 * LANE_SIZE, argb[i + 3]);
+            }
+            for (; i < end; i++) {
+                addArgbWithLuma(partial, 0, argb[i]);
+            }
+        } else {
+            for (; i < unrolledEnd; i += LANES) {
+                addArgb(partial, 0, argb[i]);
+                addArgb(partial, LANE_SIZE, argb[i + 1]);
+                addArgb(partial, 2 * LANE_SIZE, argb[i + 2]);
+                addArgb(partial, 3 * LANE_SIZE, argb[i + 3]);
+            }
+            for (; i < end; i++) {
+                addArgb(partial, 0, argb[i]);
+            }
+        }
+        flush(partial, histograms, withLuma);
+    }
+
+    /**
+     * Adds the RGBA pixels (byte order R, G, B, A as in a CV_8UC4 Mat or Bitmap.copyPixelsToBuffer)
+     * between the buffer's position and limit. The buffer's position is not modified.
+     */
+    public static void accumulate(ByteBuffer rgba, int[][] histograms, boolean withLuma) {
+        ByteBuffer buffer = rgba.duplicate().order(ByteOrder.BIG_ENDIAN);
+        int start = buffer.position();
+        int end = start + (buffer.remaining() & ~3);
+        int unrolledEnd = start + ((end - start) & ~(LANES * 4 - 1));
+        int[] partial = PARTIAL_BINS.get();
+        int i = start;
+        if (withLuma) {
+            for (; i < unrolledEnd; i += LANES * 4) {
+                addRgbaWithLuma(partial, 0, buffer.getInt(i));
+                addRgbaWithLuma(partial, LANE_SIZE, buffer.getInt(i + 4));
+                addRgbaWithLuma(partial, 2 * LANE_SIZE, buffer.getInt(i + 8));
+                addRgbaWithLuma(partial, 3 * LANE_SIZE, buffer.getInt(i + 12));
+            }
+            for (; i < end; i += 4) {
+                addRgbaWithLuma(partial, 0, buffer.getInt(i));
+            }
+        } else {
+            for (; i < unrolledEnd; i += LANES * 4) {
+                addRgba(partial, 0, buffer.getInt(i));
+                addRgba(partial, LANE_SIZE, buffer.getInt(i + 4));
+                addRgba(partial, 2 * LANE_SIZE, buffer.getInt(i + 8));
+                addRgba(partial, 3 * LANE_SIZE, buffer.getInt(i + 12));
+            }
+            for (; i < end; i += 4) {
+                addRgba(partial, 0, buffer.getInt(i));
+            }
+        }
+        flush(partial, histograms, withLuma);
+    }
+
+    public static void merge(int[][] source, int[][] target) {
+        int channels = Math.min(source.length, target.length);
+        for (int c = 0; c < channels; c++) {
+            int[] src = source[c];
+            int[] dst = target[c];
+            for (int i = 0; i < BINS; i++) {
+                dst[i] += src[i];
+            }
+        }
+    }
+
+    private static void addArgb(int[] partial, int lane, int pixel) {
+        partial[lane + RED * BINS + ((pixel >> 16) & 0xFF)]++;
+        partial[lane + GREEN * BINS + ((pixel >> 8) & 0xFF)]++;
+        partial[lane + BLUE * BINS + (pixel & 0xFF)]++;
+    }
+
+    private static void addArgbWithLuma(int[] partial, int lane, int pixel) {
+        int r = (pixel >> 16) & 0xFF;
+        int g = (pixel >> 8) & 0xFF;
+        int b = pixel & 0xFF;
+        partial[lane + RED * BINS + r]++;
+        partial[lane + GREEN * BINS + g]++;
+        partial[lane + BLUE * BINS + b]++;
+        partial[lane + LUMA * BINS + luma(r, g, b)]++;
+    }
+
+    private static void addRgba(int[] partial, int lane, int pixel) {
+        partial[lane + RED * BINS + (pixel >>> 24)]++;
+        partial[lane + GREEN * BINS + ((pixel >> 16) & 0xFF)]++;
+        partial[lane + BLUE * BINS + ((pixel >> 8) & 0xFF)]++;
+    }
+
+    private static void addRgbaWithLuma(int[] partial, int lane, int pixel) {
+        int r = pixel >>> 24;
+        int g = (pixel >> 16) & 0xFF;
+        int b = (pixel >> 8) & 0xFF;
+        partial[lane + RED * BINS + r]++;
+        partial[lane + GREEN * BINS + g]++;
+        partial[lane + BLUE * BINS + b]++;
+        partial[lane + LUMA * BINS + luma(r, g, b)]++;
+    }
+
+    // Folds the lanes into the target histograms and leaves the thread's partial bins zeroed.
+    private static void flush(int[] partial, int[][] histograms, boolean withLuma) {
+        int channels = withLuma ? CHANNELS : LUMA;
+        for (int c = 0; c < channels; c++) {
+            int[] histogram = histograms[c];
+            int base = c * BINS;
+            for (int v = 0; v < BINS; v++) {
+                int index = base + v;
+                histogram[v] += partial[index] + partial[index + LANE_SIZE]
+                        + partial[index + 2 * LANE_SIZE] + partial[index + 3 * LANE_SIZE];
+                partial[index] = 0;
+                partial[index + LANE_SIZE] = 0;
+                partial[index + 2 * LANE_SIZE] = 0;
+                partial[index + 3 * LANE_SIZE] = 0;
+            }
+        }
+    }
+}
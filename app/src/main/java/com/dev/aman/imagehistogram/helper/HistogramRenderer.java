@@ -0,0 +1,137 @@
+package com.dev.aman.imagehistogram.helper;
+
+import java.util.Arrays;
+
+/**
+ * Draws histogram curves as polylines into a reusable ARGB pixel buffer.
+ * The chart size is chosen by the caller (usually the target view), not by the photo,
+ * and every channel is scaled to its own maximum like Core.normalize with NORM_INF.
+ */
+public class HistogramRenderer {
+
+    public static final int[] COLORS_RGB = new int[]{0xFFC80000, 0xFF00C800, 0xFF0000C8};
+
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+    private int strokeWidth = 2;
+    private int backgroundColor = 0;
+    private float[] scratch;
+
+    public HistogramRenderer(int width, int height) {
+        if (width <= 1 || height <= 1) {
+            throw new IllegalArgumentException("width > 1 and height > 1");
+        }
+        this.width = width;
+        this.height = height;
+        this.pixels = new int[width * height];
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public int[] pixels() {
+        return pixels;
+    }
+
+    public void setStrokeWidth(int strokeWidth) {
+        this.strokeWidth = Math.max(1, strokeWidth);
+    }
+
+    public void setBackgroundColor(int backgroundColor) {
+        this.backgroundColor = backgroundColor;
+    }
+
+    /**
+     * Renders {@code colors.length} channels of {@code histograms} and returns the pixel buffer.
+     */
+    public int[] render(int[][] histograms, int[] colors) {
+        if (scratch == null || scratch.length != histograms[0].length) {
+            scratch = new float[histograms[0].length];
+        }
+        Arrays.fill(pixels, backgroundColor);
+        for (int c = 0; c < colors.length; c++) {
+            int[] histogram = histograms[c];
+            for (int j = 0; j < histogram.length; j++) {
+                scratch[j] = histogram[j];
+            }
+            drawSeries(scratch, colors[c]);
+        }
+        return pixels;
+    }
+
+    public int[] render(float[][] histograms, int[] colors) {
+        Arrays.fill(pixels, backgroundColor);
+        for (int c = 0; c < colors.length; c++) {
+            drawSeries(histograms[c], colors[c]);
+        }
+        return pixels;
+    }
+
+    private void drawSeries(float[] histogram, int color) {
+        float max = 0;
+        for (float value : histogram) {
+            max = Math.max(max, value);
+        }
+        int previousY = toY(histogram[0], max);
+        for (int j = 1; j < histogram.length; j++) {
+            int y = toY(histogram[j], max);
+            line(toX(j - 1, histogram.length), previousY, toX(j, histogram.length), y, color);
+            previousY = y;
+        }
+    }
+
+    private int toX(int bin, int bins) {
+        return (int) ((long) bin * (width - 1) / (bins - 1));
+    }
+
+    private int toY(double value, double max) {
+        if (max <= 0) {
+            return height - 1;
+        }
+        return (height - 1) - (int) Math.round(value * (height - 1) / max);
+    }
+
+    // Bresenham line with a square pen of strokeWidth pixels.
+    private void line(int x0, int y0, int x1, int y1, int color) {
+        int dx = Math.abs(x1 - x0);
+        int dy = -Math.abs(y1 - y0);
+        int sx = x0 < x1 ? 1 : -1;
+        int sy = y0 < y1 ? 1 : -1;
+        int error = dx + dy;
+        while (true) {
+            plot(x0, y0, color);
+            if (x0 == x1 && y0 == y1) {
+                return;
+            }
+            int e2 = 2 * error;
+            if (e2 >= dy) {
+                error += dy;
+                x0 += sx;
+            }
+            if (e2 <= dx) {
+                error += dx;
+                y0 += sy;
+            }
+        }
+    }
+
+    private void plot(int x, int y, int color) {
+        int half = strokeWidth / 2;
+        int left = Math.max(0, x - half);
+        int right = Math.min(width, x - half + strokeWidth);
+        int top = Math.max(0, y - half);
+        int bottom = Math.min(height, y - half + strokeWidth);
+        for (int py = top; py < bottom; py++) {
+            int row = py * width;
+            for (int px = left; px < right; px++) {
+                pixels[row + px] = color;
+            }
+        }
+    }
+}
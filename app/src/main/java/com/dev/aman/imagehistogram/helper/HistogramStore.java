@@ -0,0 +1,507 @@
+package com.dev.aman.imagehistogram.helper;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of fixed-size records, each holding the red, green and blue histograms of one image
+ * plus its metadata. The file is accessed through memory-mapped segments, so a whole library can be
+ * scanned with {@link #scan(Visitor)} without deserializing any object.
+ *
+ * <pre>
+ * header (64 bytes): magic, version, record size, record count, deleted count, verified count
+ * record (3136 bytes): state, crc32 of the remaining bytes, key hash, media id, modified, width, height,
+ *                      sample size, pixels, 3 x 256 int counts
+ * </pre>
+ *
+ * A record becomes visible when its state is written, which happens after its content. Writes to a
+ * mapping reach the file in no particular order, so the record is forced to the device before the header
+ * count and the verified count advance past it: records below the verified count are trusted as they are.
+ * On open only the records from the verified count on are checked against their crc, which picks up
+ * records committed after the last header update. A torn record is tombstoned (marked deleted) and the
+ * records after it are kept. {@link #compact()} rewrites the live records into a temporary file and
+ * renames it over the store, so a crash leaves either the old or the new file.
+ */
+public class HistogramStore implements Closeable {
+
+    public static final int CHANNELS = 3;
+    public static final int BINS = HistogramKernel.BINS;
+
+    static final int HEADER_BYTES = 64;
+    static final int RECORD_BYTES = 64 + CHANNELS * BINS * 4;
+    static final int SEGMENT_RECORDS = 1024;
+
+    private static final int MAGIC = 0x4853544f; // "HSTO"
+    private static final int VERSION = 1;
+
+    private static final int STATE_EMPTY = 0;
+    private static final int STATE_COMMITTED = 1;
+    private static final int STATE_DELETED = 2;
+
+    private static final int OFFSET_COUNT = 12;
+    private static final int OFFSET_DELETED = 16;
+    private static final int OFFSET_VERIFIED = 20;
+
+    private static final int FIELD_STATE = 0;
+    private static final int FIELD_CRC = 4;
+    private static final int FIELD_KEY_HASH = 8;
+    private static final int FIELD_MEDIA_ID = 16;
+    private static final int FIELD_MODIFIED = 24;
+    private static final int FIELD_WIDTH = 32;
+    private static final int FIELD_HEIGHT = 36;
+    private static final int FIELD_SAMPLE_SIZE = 40;
+    private static final int FIELD_PIXELS = 48;
+    private static final int FIELD_COUNTS = 64;
+
+    private final File file;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private MappedByteBuffer header;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final Map<Long, Integer> index = new HashMap<>();
+    private final CRC32 crc = new CRC32();
+    private final byte[] crcChunk = new byte[512];
+    private int count;
+    private int deleted;
+
+    public interface Visitor {
+        /**
+         * @return false to stop the scan
+         */
+        boolean visit(Record record);
+    }
+
+    /**
+     * Flyweight over one record of the mapped file, valid until the next move or store modification.
+     */
+    public static class Record {
+        private ByteBuffer segment;
+        private int base;
+        private int index;
+
+        public int index() {
+            return index;
+        }
+
+        public long keyHash() {
+            return segment.getLong(base + FIELD_KEY_HASH);
+        }
+
+        public long mediaId() {
+            return segment.getLong(base + FIELD_MEDIA_ID);
+        }
+
+        public long modified() {
+            return segment.getLong(base + FIELD_MODIFIED);
+        }
+
+        public int width() {
+            return segment.getInt(base + FIELD_WIDTH);
+        }
+
+        public int height() {
+            return segment.getInt(base + FIELD_HEIGHT);
+        }
+
+        public int sampleSize() {
+            return segment.getInt(base + FIELD_SAMPLE_SIZE);
+        }
+
+        public long pixels() {
+            return segment.getLong(base + FIELD_PIXELS);
+        }
+
+        public int count(int channel, int bin) {
+            return segment.getInt(base + FIELD_COUNTS + (channel * BINS + bin) * 4);
+        }
+
+        public int[] histogram(int channel, int[] target) {
+            int offset = base + FIELD_COUNTS + channel * BINS * 4;
+            for (int i = 0; i < BINS; i++) {
+                target[i] = segment.getInt(offset + i * 4);
+            }
+            return target;
+        }
+
+        /**
+         * Histogram intersection with {@code query}, averaged over the channels:
+         * 1 for identical distributions, 0 for disjoint ones.
+         */
+        public float intersection(int[][] query) {
+            long pixels = pixels();
+            if (pixels == 0) {
+                return 0f;
+            }
+            double result = 0;
+            for (int c = 0; c < CHANNELS; c++) {
+                long queryPixels = 0;
+                for (int value : query[c]) {
+                    queryPixels += value;
+                }
+                if (queryPixels == 0) {
+                    continue;
+                }
+                int offset = base + FIELD_COUNTS + c * BINS * 4;
+                double sum = 0;
+                for (int i = 0; i < BINS; i++) {
+                    sum += Math.min((double) segment.getInt(offset + i * 4) / pixels, (double) query[c][i] / queryPixels);
+                }
+                result += sum;
+            }
+            return (float) (result / CHANNELS);
+        }
+
+        void move(ByteBuffer segment, int base, int index) {
+            this.segment = segment;
+            this.base = base;
+            this.index = index;
+        }
+    }
+
+    private HistogramStore(File file) {
+        this.file = file;
+    }
+
+    public static HistogramStore open(File file) throws IOException {
+        HistogramStore store = new HistogramStore(file);
+        // Leftover of an interrupted compaction, the store itself is untouched.
+        new File(file.getPath() + ".compact").delete();
+        store.map();
+        return store;
+    }
+
+    /**
+     * 64-bit FNV-1a hash identifying a record, e.g. of {@link HistogramCache#key}.
+     */
+    public static long keyHash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * @return the number of live records
+     */
+    public synchronized int size() {
+        return count - deleted;
+    }
+
+    /**
+     * @return the number of records in the file, deleted ones included
+     */
+    public synchronized int recordCount() {
+        return count;
+    }
+
+    public synchronized int deletedCount() {
+        return deleted;
+    }
+
+    public synchronized boolean contains(String key) {
+        return index.containsKey(keyHash(key));
+    }
+
+    /**
+     * @return the record index of the live record stored under {@code key}, -1 if none
+     */
+    public synchronized int indexOf(String key) {
+        Integer position = index.get(keyHash(key));
+        return position != null ? position : -1;
+    }
+
+    /**
+     * Appends a record, a previous record with the same key is marked deleted.
+     *
+     * @param histograms - at least 3 channels (red, green, blue) of 256 bins
+     * @return the index of the new record
+     */
+    public synchronized int append(String key, long mediaId, long modified, int width, int height, int sampleSize,
+                                   int[][] histograms) throws IOException {
+        if (histograms.length < CHANNELS) {
+            throw new IllegalArgumentException("Expected " + CHANNELS + " channels, got " + histograms.length);
+        }
+        long hash = keyHash(key);
+        int position = count;
+        MappedByteBuffer segment = segment(position);
+        int base = recordBase(position);
+
+        long pixels = 0;
+        for (int c = 0; c < CHANNELS; c++) {
+            int offset = base + FIELD_COUNTS + c * BINS * 4;
+            for (int i = 0; i < BINS; i++) {
+                int value = histograms[c][i];
+                segment.putInt(offset + i * 4, value);
+                if (c == 0) {
+                    pixels += value;
+                }
+            }
+        }
+        segment.putLong(base + FIELD_KEY_HASH, hash);
+        segment.putLong(base + FIELD_MEDIA_ID, mediaId);
+        segment.putLong(base + FIELD_MODIFIED, modified);
+        segment.putInt(base + FIELD_WIDTH, width);
+        segment.putInt(base + FIELD_HEIGHT, height);
+        segment.putInt(base + FIELD_SAMPLE_SIZE, sampleSize);
+        segment.putLong(base + FIELD_PIXELS, pixels);
+        segment.putInt(base + FIELD_CRC, checksum(segment, base));
+        segment.putInt(base + FIELD_STATE, STATE_COMMITTED);
+        // The header must not count the record before its content is on the device.
+        segment.force();
+
+        Integer previous = index.put(hash, position);
+        if (previous != null) {
+            markDeleted(previous);
+        }
+        count++;
+        header.putInt(OFFSET_COUNT, count);
+        header.putInt(OFFSET_DELETED, deleted);
+        header.putInt(OFFSET_VERIFIED, count);
+        return position;
+    }
+
+    public synchronized boolean delete(String key) {
+        Integer position = index.remove(keyHash(key));
+        if (position == null) {
+            return false;
+        }
+        markDeleted(position);
+        header.putInt(OFFSET_DELETED, deleted);
+        return true;
+    }
+
+    /**
+     * Points {@code record} at the record {@code position}, deleted records included.
+     */
+    public synchronized Record get(int position, Record record) {
+        if (position < 0 || position >= count) {
+            throw new IndexOutOfBoundsException("position ∈ <0;" + (count - 1) + ">");
+        }
+        record.move(segments.get(position / SEGMENT_RECORDS), recordBase(position), position);
+        return record;
+    }
+
+    public synchronized boolean readHistograms(String key, int[][] target) {
+        int position = indexOf(key);
+        if (position < 0) {
+            return false;
+        }
+        Record record = get(position, new Record());
+        for (int c = 0; c < CHANNELS; c++) {
+            record.histogram(c, target[c]);
+        }
+        return true;
+    }
+
+    /**
+     * Visits the live records in file order with a single reused {@link Record}.
+     */
+    public synchronized void scan(Visitor visitor) {
+        Record record = new Record();
+        for (int position = 0; position < count; position++) {
+            ByteBuffer segment = segments.get(position / SEGMENT_RECORDS);
+            int base = recordBase(position);
+            if (segment.getInt(base + FIELD_STATE) != STATE_COMMITTED) {
+                continue;
+            }
+            record.move(segment, base, position);
+            if (!visitor.visit(record)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Flushes the mapped pages to the storage device.
+     */
+    public synchronized void force() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+        header.force();
+    }
+
+    /**
+     * Drops deleted records: live records are copied into a temporary file which then replaces the store.
+     * Record indexes change, previously obtained ones must not be reused.
+     */
+    public synchronized void compact() throws IOException {
+        File tmp = new File(file.getPath() + ".compact");
+        RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+        try {
+            FileChannel outChannel = out.getChannel();
+            outChannel.truncate(0);
+            ByteBuffer newHeader = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            // The copied records are forced below, before the header can become visible under the store name.
+            writeHeader(newHeader, count - deleted, 0, count - deleted);
+            writeFully(outChannel, newHeader);
+            for (int position = 0; position < count; position++) {
+                ByteBuffer segment = segments.get(position / SEGMENT_RECORDS);
+                int base = recordBase(position);
+                if (segment.getInt(base + FIELD_STATE) != STATE_COMMITTED) {
+                    continue;
+                }
+                ByteBuffer slice = segment.duplicate();
+                slice.limit(base + RECORD_BYTES).position(base);
+                writeFully(outChannel, slice);
+            }
+            outChannel.force(true);
+        } finally {
+            out.close();
+        }
+        unmap();
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            map();
+            throw new IOException("Cannot replace " + file + " with its compacted copy");
+        }
+        map();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            force();
+            unmap();
+        }
+    }
+
+    private void map() throws IOException {
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+        boolean created = channel.size() < HEADER_BYTES;
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        if (created) {
+            writeHeader(header, 0, 0, 0);
+        } else if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(8) != RECORD_BYTES) {
+            unmap();
+            throw new IOException(file + " is not a histogram store");
+        }
+        count = header.getInt(OFFSET_COUNT);
+        deleted = header.getInt(OFFSET_DELETED);
+        int verified = Math.min(count, header.getInt(OFFSET_VERIFIED));
+        int available = (int) Math.min(Integer.MAX_VALUE, (channel.size() - HEADER_BYTES) / RECORD_BYTES);
+        for (int s = 0; s * SEGMENT_RECORDS < Math.max(count, available); s++) {
+            mapSegment(s);
+        }
+        verify(verified, available);
+        index.clear();
+        deleted = 0;
+        for (int position = 0; position < count; position++) {
+            ByteBuffer segment = segments.get(position / SEGMENT_RECORDS);
+            int base = recordBase(position);
+            if (segment.getInt(base + FIELD_STATE) == STATE_COMMITTED) {
+                Integer previous = index.put(segment.getLong(base + FIELD_KEY_HASH), position);
+                if (previous != null) {
+                    // Crashed between appending the new record and deleting the old one.
+                    markDeleted(previous);
+                }
+            } else {
+                deleted++;
+            }
+        }
+        header.putInt(OFFSET_COUNT, count);
+        header.putInt(OFFSET_DELETED, deleted);
+        if (count > verified) {
+            // Makes the tombstones durable before the watermark moves past them.
+            force();
+        }
+        header.putInt(OFFSET_VERIFIED, count);
+    }
+
+    // Checks the records from the watermark on: the ones below the header count may have lost their content,
+    // the ones past it were committed after the last header update and are picked up until the first empty one.
+    // Torn records are tombstoned, so the records after them stay readable.
+    private void verify(int verified, int available) {
+        int limit = Math.max(count, available);
+        for (int position = verified; position < limit; position++) {
+            ByteBuffer segment = segments.get(position / SEGMENT_RECORDS);
+            int base = recordBase(position);
+            int state = segment.getInt(base + FIELD_STATE);
+            if (position >= count && state == STATE_EMPTY) {
+                break;
+            }
+            if (state == STATE_EMPTY || segment.getInt(base + FIELD_CRC) != checksum(segment, base)) {
+                segment.putInt(base + FIELD_STATE, STATE_DELETED);
+            }
+            if (position >= count) {
+                count = position + 1;
+            }
+        }
+    }
+
+    private void unmap() throws IOException {
+        segments.clear();
+        header = null;
+        index.clear();
+        channel = null;
+        raf.close();
+        raf = null;
+    }
+
+    private MappedByteBuffer segment(int position) throws IOException {
+        int s = position / SEGMENT_RECORDS;
+        while (segments.size() <= s) {
+            mapSegment(segments.size());
+        }
+        return segments.get(s);
+    }
+
+    private void mapSegment(int s) throws IOException {
+        // Mapping past the end grows the file, new records are zero (STATE_EMPTY).
+        long offset = HEADER_BYTES + (long) s * SEGMENT_RECORDS * RECORD_BYTES;
+        MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, offset, (long) SEGMENT_RECORDS * RECORD_BYTES);
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        segments.add(segment);
+    }
+
+    private void markDeleted(int position) {
+        segments.get(position / SEGMENT_RECORDS).putInt(recordBase(position) + FIELD_STATE, STATE_DELETED);
+        deleted++;
+    }
+
+    private int checksum(ByteBuffer segment, int base) {
+        ByteBuffer slice = segment.duplicate();
+        slice.limit(base + RECORD_BYTES).position(base + FIELD_KEY_HASH);
+        crc.reset();
+        while (slice.hasRemaining()) {
+            int length = Math.min(crcChunk.length, slice.remaining());
+            slice.get(crcChunk, 0, length);
+            crc.update(crcChunk, 0, length);
+        }
+        return (int) crc.getValue();
+    }
+
+    private static int recordBase(int position) {
+        return (position % SEGMENT_RECORDS) * RECORD_BYTES;
+    }
+
+    private static void writeHeader(ByteBuffer header, int count, int deleted, int verified) {
+        header.putInt(0, MAGIC);
+        header.putInt(4, VERSION);
+        header.putInt(8, RECORD_BYTES);
+        header.putInt(OFFSET_COUNT, count);
+        header.putInt(OFFSET_DELETED, deleted);
+        header.putInt(OFFSET_VERIFIED, verified);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.dev.aman.imagehistogram.helper;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fork-join histogram over row stripes of an image.
+ * Every stripe is accumulated into a private histogram, the partial results are merged pairwise
+ * while the tasks join (tree reduction). The number of workers is derived from the image size,
+ * images below {@link #MIN_PIXELS_PER_WORKER} stay on the calling thread.
+ * On Android ForkJoinPool is available from API 21, callers on older devices should use
+ * {@link ChannelHistograms} directly.
+ */
+public class ParallelHistogram {
+
+    public static final int MIN_PIXELS_PER_WORKER = 512 * 1024;
+
+    private static final int LEAVES_PER_WORKER = 2;
+
+    private static ForkJoinPool sPool;
+
+    /**
+     * Source of pixel rows, implementations add rows {@code <top;bottom)} to the given histograms.
+     */
+    public abstract static class Rows {
+
+        public abstract int width();
+
+        public abstract int height();
+
+        public abstract void accumulate(int top, int bottom, int[][] histograms, boolean withLuma);
+
+        public static Rows of(final int[] argb, final int width, final int height) {
+            if (argb.length < width * height) {
+                throw new IllegalArgumentException("argb.length < width * height");
+            }
+            return new Rows() {
+                @Override
+                public int width() {
+                    return width;
+                }
+
+                @Override
+                public int height() {
+                    return height;
+                }
+
+                @Override
+                public void accumulate(int top, int bottom, int[][] histograms, boolean withLuma) {
+                    HistogramKernel.accumulate(argb, top * width, (bottom - top) * width, histograms, withLuma);
+                }
+            };
+        }
+    }
+
+    private ParallelHistogram() {
+    }
+
+    public static int workersFor(int pixels) {
+        int workers = Math.min(Runtime.getRuntime().availableProcessors(), pixels / MIN_PIXELS_PER_WORKER);
+        return Math.max(1, workers);
+    }
+
+    public static int[][] compute(Rows rows, boolean withLuma) {
+        int height = rows.height();
+        int workers = workersFor(rows.width() * height);
+        if (workers == 1) {
+            int[][] histograms = HistogramKernel.newHistograms();
+            rows.accumulate(0, height, histograms, withLuma);
+            return histograms;
+        }
+        int leafRows = Math.max(1, (height + workers * LEAVES_PER_WORKER - 1) / (workers * LEAVES_PER_WORKER));
+        return pool().invoke(new StripeTask(rows, 0, height, leafRows, withLuma));
+    }
+
+    public static int[][] compute(int[] argb, int width, int height, boolean withLuma) {
+        return compute(Rows.of(argb, width, height), withLuma);
+    }
+
+    private static synchronized ForkJoinPool pool() {
+        if (sPool == null) {
+            sPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        return sPool;
+    }
+
+    private static class StripeTask extends RecursiveTask<int[][]> {
+
+        private final Rows rows;
+        private final int top;
+        private final int bottom;
+        private final int leafRows;
+        private final boolean withLuma;
+
+        StripeTask(Rows rows, int top, int bottom, int leafRows, boolean withLuma) {
+            this.rows = rows;
+            this.top = top;
+            this.bottom = bottom;
+            this.leafRows = leafRows;
+            this.withLuma = withLuma;
+        }
+
+        @Override
+        protected int[][] compute() {
+            if (bottom - top <= leafRows) {
+                int[][] histograms = HistogramKernel.newHistograms();
+                rows.accumulate(top, bottom, histograms, withLuma);
+                return histograms;
+            }
+            int middle = (top + bottom) >>> 1;
+            StripeTask upper = new StripeTask(rows, top, middle, leafRows, withLuma);
+            StripeTask lower = new StripeTask(rows, middle, bottom, leafRows, withLuma);
+            upper.fork();
+            int[][] histograms = lower.compute();
+            HistogramKernel.merge(upper.join(), histograms);
+            return histograms;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.dev.aman.imagehistogram.helper;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.net.Uri;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streaming histogram for images that don't fit in the heap.
+ * The image is decoded tile by tile with BitmapRegionDecoder, every tile is added to the accumulating
+ * histograms and its bitmap is reused for the next tile, so at most one tile is held in memory.
+ * Peak memory is roughly {@code peakBytes} for the tile plus a fixed 256 KB stripe buffer.
+ */
+public class TiledHistogram {
+
+    public static final long DEFAULT_PEAK_BYTES = 16L * 1024 * 1024;
+
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private TiledHistogram() {
+    }
+
+    public static int[][] compute(Context context, Uri path, boolean withLuma) throws IOException {
+        return compute(context, path, DEFAULT_PEAK_BYTES, withLuma);
+    }
+
+    public static int[][] compute(Context context, Uri path, long peakBytes, boolean withLuma) throws IOException {
+        InputStream stream = context.getContentResolver().openInputStream(path);
+        if (stream == null) {
+            throw new IOException("Cannot open " + path);
+        }
+        BitmapRegionDecoder decoder;
+        try {
+            decoder = BitmapRegionDecoder.newInstance(stream, false);
+        } finally {
+            stream.close();
+        }
+        try {
+            return compute(decoder, peakBytes, withLuma);
+        } finally {
+            decoder.recycle();
+        }
+    }
+
+    public static int[][] compute(BitmapRegionDecoder decoder, long peakBytes, boolean withLuma) throws IOException {
+        int width = decoder.getWidth();
+        int height = decoder.getHeight();
+        long tilePixels = Math.max(1, peakBytes / BYTES_PER_PIXEL);
+        int tileWidth = (int) Math.min(width, tilePixels);
+        int tileHeight = (int) Math.max(1, Math.min(height, tilePixels / tileWidth));
+
+        int[][] histograms = HistogramKernel.newHistograms();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Rect region = new Rect();
+        Bitmap tile = null;
+        try {
+            for (int top = 0; top < height; top += tileHeight) {
+                for (int left = 0; left < width; left += tileWidth) {
+                    region.set(left, top, Math.min(width, left + tileWidth), Math.min(height, top + tileHeight));
+                    tile = decodeTile(decoder, region, options, tile);
+                    if (tile == null) {
+                        throw new IOException("Cannot decode region " + region);
+                    }
+                    ChannelHistograms.accumulate(tile, region.width(), 0, region.height(), histograms, withLuma);
+                }
+            }
+        } finally {
+            if (tile != null) {
+                tile.recycle();
+            }
+        }
+        return histograms;
+    }
+
+    // Decodes into the previous tile's bitmap; edge tiles only fill its top-left corner.
+    private static Bitmap decodeTile(BitmapRegionDecoder decoder, Rect region, BitmapFactory.Options options, Bitmap previous) {
+        options.inBitmap = previous;
+        try {
+            Bitmap tile = decoder.decodeRegion(region, options);
+            if (previous != null && tile != previous) {
+                previous.recycle();
+            }
+            return tile;
+        } catch (IllegalArgumentException e) {
+            if (previous == null) {
+                throw e;
+            }
+            // The previous tile can't be reused (e.g. pre-KitKat size rules), release it before decoding a new one.
+            previous.recycle();
+            options.inBitmap = null;
+            return decoder.decodeRegion(region, options);
+        }
+    }
+}
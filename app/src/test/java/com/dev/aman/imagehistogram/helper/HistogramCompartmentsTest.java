@@ -0,0 +1,61 @@
+package com.dev.aman.imagehistogram.helper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HistogramCompartmentsTest {
+
+    private static float[] histogram() {
+        float[] histData = new float[HistogramCompartments.DEFAULT_BINS_COUNT];
+        for (int i = 0; i < histData.length; i++) {
+            histData[i] = (i * 37) % 101;
+        }
+        return histData;
+    }
+
+    @Test
+    public void statistics_matchNaiveComputation() {
+        float[] histData = histogram();
+        HistogramCompartments compartments = HistogramCompartments.from(histData);
+        int interval = compartments.interval();
+
+        float total = 0f;
+        for (int i = 0; i < compartments.size(); i++) {
+            float sum = 0f;
+            float max = histData[interval * i];
+            for (int j = interval * i; j < interval * (i + 1); j++) {
+                sum += histData[j];
+                max = Math.max(max, histData[j]);
+            }
+            float average = sum / interval;
+            float variance = 0f;
+            for (int j = interval * i; j < interval * (i + 1); j++) {
+                variance += (histData[j] - average) * (histData[j] - average);
+            }
+            total += sum;
+
+            assertEquals(sum, compartments.sum(i), 1e-3f);
+            assertEquals(max, compartments.maxValue(i), 0f);
+            assertEquals(average, compartments.average(i), 1e-3f);
+            assertEquals(variance / interval, compartments.variance(i), 1e-2f);
+        }
+        assertEquals(total, compartments.sumAll(), 1e-3f);
+        assertEquals(total / compartments.size(), compartments.averageAll(), 1e-3f);
+    }
+
+    @Test
+    public void percentageRange_sumsPercentages() {
+        HistogramCompartments compartments = HistogramCompartments.from(histogram());
+        float expected = compartments.percentage(1) + compartments.percentage(2) + compartments.percentage(3);
+
+        assertEquals(expected, compartments.percentageRange(1, 3), 1e-3f);
+        assertEquals(100f, compartments.percentageRange(0, compartments.size() - 1), 1e-3f);
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void sum_rejectsIndexEqualToSize() {
+        HistogramCompartments compartments = HistogramCompartments.from(histogram());
+        compartments.sum(compartments.size());
+    }
+}
@@ -0,0 +1,101 @@
+package com.dev.aman.imagehistogram.helper;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class HistogramKernelTest {
+
+    private static int[] pixels(int count) {
+        Random random = new Random(42);
+        int[] argb = new int[count];
+        for (int i = 0; i < count; i++) {
+            argb[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        return argb;
+    }
+
+    private static int[][] naive(int[] argb) {
+        int[][] histograms = HistogramKernel.newHistograms();
+        for (int pixel : argb) {
+            int r = (pixel >> 16) & 0xFF;
+            int g = (pixel >> 8) & 0xFF;
+            int b = pixel & 0xFF;
+            histograms[HistogramKernel.RED][r]++;
+            histograms[HistogramKernel.GREEN][g]++;
+            histograms[HistogramKernel.BLUE][b]++;
+            histograms[HistogramKernel.LUMA][(int) Math.round(0.299 * r + 0.587 * g + 0.114 * b)]++;
+        }
+        return histograms;
+    }
+
+    @Test
+    public void accumulate_argb_matchesNaiveCounts() {
+        int[] argb = pixels(10007);
+        int[][] expected = naive(argb);
+        int[][] actual = HistogramKernel.compute(argb, true);
+
+        for (int c = 0; c < HistogramKernel.LUMA; c++) {
+            assertArrayEquals(expected[c], actual[c]);
+        }
+        int total = 0;
+        for (int count : actual[HistogramKernel.LUMA]) {
+            total += count;
+        }
+        assertEquals(argb.length, total);
+    }
+
+    @Test
+    public void accumulate_rgbaBuffer_matchesArgbArray() {
+        int[] argb = pixels(4099);
+        ByteBuffer rgba = ByteBuffer.allocateDirect(argb.length * 4);
+        for (int pixel : argb) {
+            rgba.putInt((pixel << 8) | (pixel >>> 24));
+        }
+        rgba.flip();
+
+        int[][] fromBuffer = HistogramKernel.newHistograms();
+        HistogramKernel.accumulate(rgba, fromBuffer, true);
+        int[][] fromArray = HistogramKernel.compute(argb, true);
+
+        for (int c = 0; c < HistogramKernel.CHANNELS; c++) {
+            assertArrayEquals(fromArray[c], fromBuffer[c]);
+        }
+        assertEquals(0, rgba.position());
+    }
+
+    @Test
+    public void accumulate_knownColours_fillExpectedLumaBins() {
+        // Expected bins from OpenCV's RGB2GRAY, round(0.299 R + 0.587 G + 0.114 B), one count per colour index.
+        int[][] colours = {{255, 0, 0}, {0, 255, 0}, {0, 0, 255}, {128, 128, 128}, {100, 150, 200}, {10, 20, 30}};
+        int[] bins = {76, 150, 29, 128, 141, 18};
+        int[] argb = new int[1 + 2 + 3 + 4 + 5 + 6];
+        int n = 0;
+        for (int i = 0; i < colours.length; i++) {
+            for (int k = 0; k <= i; k++) {
+                argb[n++] = 0xff000000 | (colours[i][0] << 16) | (colours[i][1] << 8) | colours[i][2];
+            }
+        }
+
+        int[] luma = HistogramKernel.compute(argb, true)[HistogramKernel.LUMA];
+
+        int[] expected = new int[HistogramKernel.BINS];
+        for (int i = 0; i < bins.length; i++) {
+            expected[bins[i]] += i + 1;
+        }
+        assertArrayEquals(expected, luma);
+    }
+
+    @Test
+    public void luma_matchesOpenCvFixedPoint() {
+        assertEquals(0, HistogramKernel.luma(0, 0, 0));
+        assertEquals(255, HistogramKernel.luma(255, 255, 255));
+        assertEquals(76, HistogramKernel.luma(255, 0, 0));
+        assertEquals(150, HistogramKernel.luma(0, 255, 0));
+        assertEquals(29, HistogramKernel.luma(0, 0, 255));
+    }
+}
@@ -0,0 +1,138 @@
+package com.dev.aman.imagehistogram.helper;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramStoreTest {
+
+    @Test
+    public void append_replaceAndReopen_keepsLatestRecords() throws Exception {
+        File file = File.createTempFile("histograms", ".store");
+        file.delete();
+        int[][] first = randomHistograms(1);
+        int[][] second = randomHistograms(2);
+
+        HistogramStore store = HistogramStore.open(file);
+        store.append("a", 1, 100, 640, 480, 2, first);
+        store.append("b", 2, 200, 640, 480, 2, first);
+        store.append("a", 1, 300, 640, 480, 2, second);
+        assertEquals(2, store.size());
+        assertEquals(1, store.deletedCount());
+        store.close();
+
+        store = HistogramStore.open(file);
+        int[][] target = new int[HistogramStore.CHANNELS][HistogramStore.BINS];
+        assertTrue(store.readHistograms("a", target));
+        assertArrayEquals(second[2], target[2]);
+        assertEquals(300, store.get(store.indexOf("a"), new HistogramStore.Record()).modified());
+
+        store.compact();
+        assertEquals(2, store.recordCount());
+        assertTrue(store.readHistograms("b", target));
+        assertArrayEquals(first[0], target[0]);
+        store.close();
+        file.delete();
+    }
+
+    @Test
+    public void open_recordsPastHeaderCount_areRecoveredUnlessTorn() throws Exception {
+        File file = File.createTempFile("histograms", ".store");
+        file.delete();
+        HistogramStore store = HistogramStore.open(file);
+        store.append("a", 1, 0, 1, 1, 1, randomHistograms(3));
+        store.append("b", 2, 0, 1, 1, 1, randomHistograms(4));
+        store.append("c", 3, 0, 1, 1, 1, randomHistograms(5));
+        store.close();
+
+        // Crash before the header count was updated, with the last record only partially written.
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(12);
+        raf.write(new byte[]{1, 0, 0, 0});
+        raf.seek(HistogramStore.HEADER_BYTES + 2L * HistogramStore.RECORD_BYTES + HistogramStore.RECORD_BYTES - 4);
+        raf.write(new byte[]{1, 2, 3, 4});
+        raf.close();
+
+        store = HistogramStore.open(file);
+        assertEquals(2, store.size());
+        assertTrue(store.contains("b"));
+        assertFalse(store.contains("c"));
+        store.close();
+        file.delete();
+    }
+
+    @Test
+    public void open_tornRecordPastWatermark_isTombstonedAndLaterRecordsKept() throws Exception {
+        File file = File.createTempFile("histograms", ".store");
+        file.delete();
+        HistogramStore store = HistogramStore.open(file);
+        store.append("a", 1, 0, 1, 1, 1, randomHistograms(3));
+        store.append("b", 2, 0, 1, 1, 1, randomHistograms(4));
+        store.append("c", 3, 0, 1, 1, 1, randomHistograms(5));
+        store.close();
+
+        // Only the first record verified, the second one lost part of its counts.
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(20);
+        raf.write(new byte[]{1, 0, 0, 0});
+        raf.seek(HistogramStore.HEADER_BYTES + HistogramStore.RECORD_BYTES + HistogramStore.RECORD_BYTES - 4);
+        raf.write(new byte[]{1, 2, 3, 4});
+        raf.close();
+
+        store = HistogramStore.open(file);
+        assertEquals(3, store.recordCount());
+        assertEquals(1, store.deletedCount());
+        assertTrue(store.contains("a"));
+        assertFalse(store.contains("b"));
+        assertTrue(store.contains("c"));
+        store.append("d", 4, 0, 1, 1, 1, randomHistograms(6));
+        store.close();
+
+        store = HistogramStore.open(file);
+        assertEquals(3, store.size());
+        assertTrue(store.contains("c"));
+        assertTrue(store.contains("d"));
+        store.close();
+        file.delete();
+    }
+
+    @Test
+    public void open_recordsBelowWatermark_areNotVerified() throws Exception {
+        File file = File.createTempFile("histograms", ".store");
+        file.delete();
+        HistogramStore store = HistogramStore.open(file);
+        store.append("a", 1, 0, 1, 1, 1, randomHistograms(3));
+        store.append("b", 2, 0, 1, 1, 1, randomHistograms(4));
+        store.close();
+
+        // A changed count below the watermark is trusted, no crc is computed for it.
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(HistogramStore.HEADER_BYTES + HistogramStore.RECORD_BYTES - 4);
+        raf.write(new byte[]{7, 0, 0, 0});
+        raf.close();
+
+        store = HistogramStore.open(file);
+        assertEquals(2, store.size());
+        assertEquals(7, store.get(0, new HistogramStore.Record()).count(2, HistogramStore.BINS - 1));
+        store.close();
+        file.delete();
+    }
+
+    private static int[][] randomHistograms(long seed) {
+        Random random = new Random(seed);
+        int[][] histograms = new int[HistogramStore.CHANNELS][HistogramStore.BINS];
+        for (int[] histogram : histograms) {
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] = random.nextInt(1000);
+            }
+        }
+        return histograms;
+    }
+}
@@ -0,0 +1,34 @@
+package com.dev.aman.imagehistogram.helper;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ParallelHistogramTest {
+
+    @Test
+    public void compute_largeImage_matchesSequentialKernel() {
+        int width = 1024;
+        int height = 2048;
+        int[] argb = new int[width * height];
+        Random random = new Random(7);
+        for (int i = 0; i < argb.length; i++) {
+            argb[i] = random.nextInt();
+        }
+
+        int[][] expected = HistogramKernel.compute(argb, true);
+        int[][] actual = ParallelHistogram.compute(argb, width, height, true);
+
+        for (int c = 0; c < HistogramKernel.CHANNELS; c++) {
+            assertArrayEquals(expected[c], actual[c]);
+        }
+    }
+
+    @Test
+    public void workersFor_smallImage_staysOnOneThread() {
+        assertEquals(1, ParallelHistogram.workersFor(640 * 480));
+    }
+}
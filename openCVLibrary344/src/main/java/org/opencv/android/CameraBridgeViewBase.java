@@ -17,6 +17,7 @@ import android.graphics.Canvas;
 import android.graphics.Rect;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.view.Display;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 
@@ -33,6 +34,7 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
     private static final int MAX_UNSPECIFIED = -1;
     private static final int STOPPED = 0;
     private static final int STARTED = 1;
+    private static final float DEFAULT_REFRESH_RATE = 60f;
 
     private int mState = STOPPED;
     private Bitmap mCacheBitmap;
@@ -50,6 +52,18 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
     protected boolean mEnabled;
     protected FpsMeter mFpsMeter = null;
 
+    private final Rect mSrcRect = new Rect();
+    private final Rect mDstRect = new Rect();
+    private volatile float mMaxDrawFps = 0f;
+    private volatile long mMinDrawIntervalNanos = 0;
+    private long mLastDrawNanos;
+    private boolean mFrameUnchanged;
+    // A changed frame was throttled, so the screen is behind the listener output.
+    private boolean mDrawPending;
+    private volatile FrameMetrics mFrameMetrics;
+    private volatile boolean mShowFrameMetrics;
+    private long mLastFrameNanos;
+
     public static final int CAMERA_ID_ANY   = -1;
     public static final int CAMERA_ID_BACK  = 99;
     public static final int CAMERA_ID_FRONT = 98;
@@ -185,7 +199,9 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
         public Mat rgba();
 
         /**
-         * This method returns single channel gray scale Mat with frame
+         * This method returns single channel gray scale Mat with frame.
+         * The Mat belongs to the frame and is reused for the following frames: it is only valid
+         * during onCameraFrame and must not be released by the caller.
          */
         public Mat gray();
     };
@@ -255,6 +271,64 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
             mFpsMeter = null;
     }
 
+    /**
+     * Starts collecting per-stage frame latencies (see FrameMetrics), optionally drawn over the preview.
+     */
+    public void enableFrameMetrics(boolean showOverlay) {
+        if (mFrameMetrics == null)
+            mFrameMetrics = new FrameMetrics();
+        mShowFrameMetrics = showOverlay;
+    }
+
+    public void disableFrameMetrics() {
+        mFrameMetrics = null;
+        mShowFrameMetrics = false;
+    }
+
+    /**
+     * @return collected frame latencies, or null if enableFrameMetrics() was not called
+     */
+    public FrameMetrics getFrameMetrics() {
+        return mFrameMetrics;
+    }
+
+    /**
+     * Records a stage measured by a subclass (e.g. FrameMetrics.STAGE_QUEUE), ignored when metrics are disabled.
+     */
+    protected void recordFrameStage(int stage, long nanos) {
+        FrameMetrics metrics = mFrameMetrics;
+        if (metrics != null)
+            metrics.record(stage, nanos);
+    }
+
+    /**
+     * Limits how often processed frames are drawn, frames are still delivered to the listener at camera rate.
+     * @param fps - the maximum number of draws per second, 0 to follow the display refresh rate
+     */
+    public void setMaxDrawFps(float fps) {
+        mMaxDrawFps = Math.max(0f, fps);
+        updateDrawInterval();
+    }
+
+    /**
+     * Called by the listener from onCameraFrame() when the Mat it returns shows the same picture as
+     * the previously returned one (e.g. a paused or cached result). The frame is then neither
+     * converted nor drawn again. Camera frames reuse their Mats, so the view can't detect it itself.
+     */
+    public void markFrameUnchanged() {
+        mFrameUnchanged = true;
+    }
+
+    private void updateDrawInterval() {
+        float fps = mMaxDrawFps;
+        if (fps <= 0f) {
+            Display display = getDisplay();
+            fps = display != null ? display.getRefreshRate() : DEFAULT_REFRESH_RATE;
+        }
+        // Slightly below the nominal period, so frames arriving with jitter at exactly the target rate are not skipped.
+        mMinDrawIntervalNanos = (long) (1e9 / fps * 0.9);
+    }
+
     /**
      *
      * @param listener
@@ -356,6 +430,10 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
     // Bitmap must be constructed before surface
     private void onEnterStartedState() {
         Log.d(TAG, "call onEnterStartedState");
+        updateDrawInterval();
+        mLastDrawNanos = 0;
+        mDrawPending = false;
+        mLastFrameNanos = 0;
         /* Connect camera */
         if (!connectCamera(getWidth(), getHeight())) {
             AlertDialog ad = new AlertDialog.Builder(getContext()).create();
@@ -387,17 +465,40 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
      */
     protected void deliverAndDrawFrame(CvCameraViewFrame frame) {
         Mat modified;
+        FrameMetrics metrics = mFrameMetrics;
+        long start = System.nanoTime();
+        if (metrics != null && mLastFrameNanos != 0)
+            metrics.record(FrameMetrics.STAGE_FRAME_INTERVAL, start - mLastFrameNanos);
+        mLastFrameNanos = start;
 
+        mFrameUnchanged = false;
         if (mListener != null) {
             modified = mListener.onCameraFrame(frame);
         } else {
             modified = frame.rgba();
         }
+        // Counts every processed frame, including the ones not drawn below.
+        if (mFpsMeter != null)
+            mFpsMeter.measure();
+
+        /* Processing runs at camera rate, drawing is capped to the display refresh or the configured fps */
+        long now = System.nanoTime();
+        if (metrics != null)
+            metrics.record(FrameMetrics.STAGE_LISTENER, now - start);
+        if (mLastDrawNanos != 0 && now - mLastDrawNanos < mMinDrawIntervalNanos) {
+            if (!mFrameUnchanged)
+                mDrawPending = true;
+            return;
+        }
+        if (mFrameUnchanged && !mDrawPending && mLastDrawNanos != 0)
+            return;
 
         boolean bmpValid = true;
         if (modified != null) {
             try {
                 Utils.matToBitmap(modified, mCacheBitmap);
+                if (metrics != null)
+                    metrics.record(FrameMetrics.STAGE_CONVERT, System.nanoTime() - now);
             } catch(Exception e) {
                 Log.e(TAG, "Mat type: " + modified);
                 Log.e(TAG, "Bitmap type: " + mCacheBitmap.getWidth() + "*" + mCacheBitmap.getHeight());
@@ -407,31 +508,38 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
         }
 
         if (bmpValid && mCacheBitmap != null) {
+            long drawStart = System.nanoTime();
             Canvas canvas = getHolder().lockCanvas();
             if (canvas != null) {
                 canvas.drawColor(0, android.graphics.PorterDuff.Mode.CLEAR);
                 if (BuildConfig.DEBUG)
                     Log.d(TAG, "mStretch value: " + mScale);
 
+                int bitmapWidth = mCacheBitmap.getWidth();
+                int bitmapHeight = mCacheBitmap.getHeight();
+                mSrcRect.set(0, 0, bitmapWidth, bitmapHeight);
                 if (mScale != 0) {
-                    canvas.drawBitmap(mCacheBitmap, new Rect(0,0,mCacheBitmap.getWidth(), mCacheBitmap.getHeight()),
-                         new Rect((int)((canvas.getWidth() - mScale*mCacheBitmap.getWidth()) / 2),
-                         (int)((canvas.getHeight() - mScale*mCacheBitmap.getHeight()) / 2),
-                         (int)((canvas.getWidth() - mScale*mCacheBitmap.getWidth()) / 2 + mScale*mCacheBitmap.getWidth()),
-                         (int)((canvas.getHeight() - mScale*mCacheBitmap.getHeight()) / 2 + mScale*mCacheBitmap.getHeight())), null);
+                    mDstRect.set((int)((canvas.getWidth() - mScale*bitmapWidth) / 2),
+                         (int)((canvas.getHeight() - mScale*bitmapHeight) / 2),
+                         (int)((canvas.getWidth() - mScale*bitmapWidth) / 2 + mScale*bitmapWidth),
+                         (int)((canvas.getHeight() - mScale*bitmapHeight) / 2 + mScale*bitmapHeight));
                 } else {
-                     canvas.drawBitmap(mCacheBitmap, new Rect(0,0,mCacheBitmap.getWidth(), mCacheBitmap.getHeight()),
-                         new Rect((canvas.getWidth() - mCacheBitmap.getWidth()) / 2,
-                         (canvas.getHeight() - mCacheBitmap.getHeight()) / 2,
-                         (canvas.getWidth() - mCacheBitmap.getWidth()) / 2 + mCacheBitmap.getWidth(),
-                         (canvas.getHeight() - mCacheBitmap.getHeight()) / 2 + mCacheBitmap.getHeight()), null);
+                    mDstRect.set((canvas.getWidth() - bitmapWidth) / 2,
+                         (canvas.getHeight() - bitmapHeight) / 2,
+                         (canvas.getWidth() - bitmapWidth) / 2 + bitmapWidth,
+                         (canvas.getHeight() - bitmapHeight) / 2 + bitmapHeight);
                 }
+                canvas.drawBitmap(mCacheBitmap, mSrcRect, mDstRect, null);
 
-                if (mFpsMeter != null) {
-                    mFpsMeter.measure();
+                if (mFpsMeter != null)
                     mFpsMeter.draw(canvas, 20, 30);
-                }
+                if (metrics != null && mShowFrameMetrics)
+                    metrics.draw(canvas, 20, 60);
                 getHolder().unlockCanvasAndPost(canvas);
+                if (metrics != null)
+                    metrics.record(FrameMetrics.STAGE_DRAW, System.nanoTime() - drawStart);
+                mLastDrawNanos = now;
+                mDrawPending = false;
             }
         }
     }
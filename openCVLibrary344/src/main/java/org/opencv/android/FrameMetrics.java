@@ -0,0 +1,96 @@
+package org.opencv.android;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+/**
+ * Per-stage latency statistics of the camera frame pipeline.
+ * Every stage keeps a fixed-memory {@link LatencyHistogram}, so p50/p95/p99/max can be queried
+ * at any time without storing individual samples.
+ */
+public class FrameMetrics {
+
+    /** Time between two consecutive frames reaching the pipeline (capture cadence) */
+    public static final int STAGE_FRAME_INTERVAL = 0;
+    /** Time a captured frame waited before processing started */
+    public static final int STAGE_QUEUE = 1;
+    /** Listener callback, including any color conversion it requested */
+    public static final int STAGE_LISTENER = 2;
+    /** Conversion of the resulting Mat into the cache bitmap */
+    public static final int STAGE_CONVERT = 3;
+    /** Locking the canvas, drawing and posting it */
+    public static final int STAGE_DRAW = 4;
+    public static final int STAGES_COUNT = 5;
+
+    private static final String[] STAGE_NAMES = {"interval", "queue", "listener", "convert", "draw"};
+    private static final int OVERLAY_UPDATE_STEP = 30;
+
+    private final LatencyHistogram[] mStages = new LatencyHistogram[STAGES_COUNT];
+    private final String[] mOverlayLines = new String[STAGES_COUNT];
+    private Paint mPaint;
+    private int mDrawCounter;
+
+    public FrameMetrics() {
+        for (int i = 0; i < STAGES_COUNT; i++)
+            mStages[i] = new LatencyHistogram();
+    }
+
+    public void record(int stage, long nanos) {
+        mStages[stage].record(nanos);
+    }
+
+    public LatencyHistogram getStage(int stage) {
+        return mStages[stage];
+    }
+
+    public static String getStageName(int stage) {
+        return STAGE_NAMES[stage];
+    }
+
+    public void reset() {
+        for (LatencyHistogram stage : mStages)
+            stage.reset();
+    }
+
+    /**
+     * Draws one line per stage (p50/p95/p99/max in ms), refreshed every 30 frames like FpsMeter.
+     */
+    public void draw(Canvas canvas, float offsetx, float offsety) {
+        if (mPaint == null) {
+            mPaint = new Paint();
+            mPaint.setColor(Color.BLUE);
+            mPaint.setTextSize(20);
+        }
+        if (mDrawCounter++ % OVERLAY_UPDATE_STEP == 0) {
+            for (int i = 0; i < STAGES_COUNT; i++)
+                mOverlayLines[i] = describe(i);
+        }
+        float lineHeight = mPaint.getTextSize() * 1.2f;
+        for (int i = 0; i < STAGES_COUNT; i++)
+            canvas.drawText(mOverlayLines[i], offsetx, offsety + i * lineHeight, mPaint);
+    }
+
+    public String describe(int stage) {
+        LatencyHistogram h = mStages[stage];
+        return STAGE_NAMES[stage] + ": p50 " + millis(h.getPercentileMicros(50))
+                + " p95 " + millis(h.getPercentileMicros(95))
+                + " p99 " + millis(h.getPercentileMicros(99))
+                + " max " + millis(h.getMaxMicros()) + " ms (n=" + h.getCount() + ")";
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < STAGES_COUNT; i++) {
+            if (i > 0)
+                sb.append('\n');
+            sb.append(describe(i));
+        }
+        return sb.toString();
+    }
+
+    private static String millis(long micros) {
+        return String.valueOf(micros / 1000) + "." + String.valueOf(micros % 1000 / 100);
+    }
+}
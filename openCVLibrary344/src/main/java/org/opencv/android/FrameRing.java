@@ -0,0 +1,195 @@
+package org.opencv.android;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free single-producer/single-consumer ring of frame slots.
+ * The ring only hands out slot indices, the caller preallocates one frame buffer per slot
+ * ({@link #getSlotsCount()} of them: the queued frames plus one being written and one being processed).
+ * At most {@code capacity} frames are queued: when the consumer is slower than the producer,
+ * POLICY_DROP_OLDEST recycles the oldest queued frame and POLICY_BLOCK makes the producer wait
+ * until the consumer takes one. Dropped, processed and queued frames are counted.
+ */
+public class FrameRing {
+
+    public static final int POLICY_DROP_OLDEST = 1;
+    public static final int POLICY_BLOCK = 2;
+
+    private static final long BLOCK_PARK_NANOS = 1000000L;
+
+    private final int mCapacity;
+    private final int mPolicy;
+    private final IndexQueue mReady;
+    private final IndexQueue mFree;
+
+    private final AtomicLong mDropped = new AtomicLong();
+    private final AtomicLong mProcessed = new AtomicLong();
+    private final AtomicLong mPublished = new AtomicLong();
+
+    private volatile Thread mConsumer;
+    private volatile Thread mProducer;
+    private volatile boolean mClosed;
+
+    /**
+     * @param capacity - the maximum number of frames waiting for the consumer
+     * @param policy - POLICY_DROP_OLDEST or POLICY_BLOCK
+     */
+    public FrameRing(int capacity, int policy) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be >= 1");
+        if (policy != POLICY_DROP_OLDEST && policy != POLICY_BLOCK)
+            throw new IllegalArgumentException("Unknown policy " + policy);
+        mCapacity = capacity;
+        mPolicy = policy;
+        int slots = getSlotsCount();
+        mReady = new IndexQueue(slots);
+        mFree = new IndexQueue(slots);
+        for (int i = 0; i < slots; i++)
+            mFree.offer(i);
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    public int getPolicy() {
+        return mPolicy;
+    }
+
+    public int getSlotsCount() {
+        return mCapacity + 2;
+    }
+
+    /**
+     * Producer side: returns a slot to write the next frame into, or -1 if the ring is closed.
+     */
+    public int acquireWrite() {
+        mProducer = Thread.currentThread();
+        while (!mClosed) {
+            // Slots count also covers the frames being written and processed,
+            // so the capacity is enforced on the queue length, not on the free slots.
+            if (mReady.size() < mCapacity) {
+                int slot = mFree.poll();
+                if (slot >= 0)
+                    return slot;
+                // The consumer took a queued frame, its previous slot is about to be freed.
+                Thread.yield();
+            } else if (mPolicy == POLICY_DROP_OLDEST) {
+                int slot = mReady.poll();
+                if (slot >= 0) {
+                    mDropped.incrementAndGet();
+                    return slot;
+                }
+            } else {
+                LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Producer side: queues a slot obtained from {@link #acquireWrite()} for the consumer.
+     */
+    public void publish(int slot) {
+        mReady.offer(slot);
+        mPublished.incrementAndGet();
+        Thread consumer = mConsumer;
+        if (consumer != null)
+            LockSupport.unpark(consumer);
+    }
+
+    /**
+     * Consumer side: waits for the oldest queued slot, returns -1 if the ring is closed.
+     */
+    public int acquireRead() {
+        mConsumer = Thread.currentThread();
+        while (!mClosed) {
+            int slot = mReady.poll();
+            if (slot >= 0) {
+                Thread producer = mProducer;
+                if (producer != null && mPolicy == POLICY_BLOCK)
+                    LockSupport.unpark(producer);
+                return slot;
+            }
+            LockSupport.park(this);
+        }
+        return -1;
+    }
+
+    /**
+     * Consumer side: gives a processed slot back to the producer.
+     */
+    public void release(int slot) {
+        mProcessed.incrementAndGet();
+        mFree.offer(slot);
+        Thread producer = mProducer;
+        if (producer != null && mPolicy == POLICY_BLOCK)
+            LockSupport.unpark(producer);
+    }
+
+    /**
+     * Wakes up both sides, after this call acquireWrite() and acquireRead() return -1.
+     */
+    public void close() {
+        mClosed = true;
+        Thread consumer = mConsumer;
+        if (consumer != null)
+            LockSupport.unpark(consumer);
+        Thread producer = mProducer;
+        if (producer != null)
+            LockSupport.unpark(producer);
+    }
+
+    public long getDroppedCount() {
+        return mDropped.get();
+    }
+
+    public long getProcessedCount() {
+        return mProcessed.get();
+    }
+
+    public long getPublishedCount() {
+        return mPublished.get();
+    }
+
+    public int getQueuedCount() {
+        return mReady.size();
+    }
+
+    /**
+     * Bounded queue of slot indices. offer() must only be called from one thread,
+     * poll() may race from several threads and claims the element with a CAS on the head.
+     */
+    private static class IndexQueue {
+        private final int[] mItems;
+        private final AtomicLong mHead = new AtomicLong();
+        private final AtomicLong mTail = new AtomicLong();
+
+        IndexQueue(int size) {
+            mItems = new int[size];
+        }
+
+        void offer(int item) {
+            long tail = mTail.get();
+            // Never full: every slot index is in at most one queue at a time.
+            mItems[(int) (tail % mItems.length)] = item;
+            mTail.set(tail + 1);
+        }
+
+        int poll() {
+            while (true) {
+                long head = mHead.get();
+                if (head >= mTail.get())
+                    return -1;
+                int item = mItems[(int) (head % mItems.length)];
+                if (mHead.compareAndSet(head, head + 1))
+                    return item;
+            }
+        }
+
+        int size() {
+            return (int) Math.max(0, mTail.get() - mHead.get());
+        }
+    }
+}
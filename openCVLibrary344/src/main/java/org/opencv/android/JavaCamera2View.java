@@ -52,6 +52,15 @@ public class JavaCamera2View extends CameraBridgeViewBase {
 
     private HandlerThread mBackgroundThread;
     private Handler mBackgroundHandler;
+    private JavaCamera2Frame mFrame;
+
+    private volatile FrameHistogramListener mHistogramListener;
+    private volatile boolean mWithChroma;
+    private volatile boolean mDeliverFrames = true;
+    private final PlaneHistogram mPlaneHistogram = new PlaneHistogram();
+    private final int[] mHistogramY = new int[PlaneHistogram.BINS];
+    private int[] mHistogramU;
+    private int[] mHistogramV;
 
     public JavaCamera2View(Context context, int cameraId) {
         super(context, cameraId);
@@ -163,6 +172,9 @@ public class JavaCamera2View extends CameraBridgeViewBase {
             mImageReader.setOnImageAvailableListener(new ImageReader.OnImageAvailableListener() {
                 @Override
                 public void onImageAvailable(ImageReader reader) {
+                    // Image.getTimestamp() may use a different clock than System.nanoTime(),
+                    // so the queue stage starts when the Image is handed to us.
+                    long arrival = System.nanoTime();
                     Image image = reader.acquireLatestImage();
                     if (image == null)
                         return;
@@ -178,13 +190,28 @@ public class JavaCamera2View extends CameraBridgeViewBase {
                     assert (planes[1].getPixelStride() == 2);
                     assert (planes[2].getPixelStride() == 2);
 
+                    FrameHistogramListener histogramListener = mHistogramListener;
+                    if (histogramListener != null) {
+                        deliverPlaneHistograms(histogramListener, planes, w, h);
+                        if (!mDeliverFrames) {
+                            image.close();
+                            return;
+                        }
+                    }
+
                     ByteBuffer y_plane = planes[0].getBuffer();
                     ByteBuffer uv_plane = planes[1].getBuffer();
-                    Mat y_mat = new Mat(h, w, CvType.CV_8UC1, y_plane);
-                    Mat uv_mat = new Mat(h / 2, w / 2, CvType.CV_8UC2, uv_plane);
-                    JavaCamera2Frame tempFrame = new JavaCamera2Frame(y_mat, uv_mat, w, h);
-                    deliverAndDrawFrame(tempFrame);
-                    tempFrame.release();
+                    JavaCamera2Frame frame = mFrame;
+                    if (frame == null || frame.mWidth != w || frame.mHeight != h) {
+                        if (frame != null)
+                            frame.release();
+                        frame = new JavaCamera2Frame(w, h);
+                        mFrame = frame;
+                    }
+                    frame.bind(y_plane, uv_plane);
+                    recordFrameStage(FrameMetrics.STAGE_QUEUE, System.nanoTime() - arrival);
+                    deliverAndDrawFrame(frame);
+                    frame.unbind();
                     image.close();
                 }
             }, mBackgroundHandler);
@@ -227,6 +254,52 @@ public class JavaCamera2View extends CameraBridgeViewBase {
         }
     }
 
+    /**
+     * Receives histograms computed straight from the YUV planes of every preview frame.
+     * Called on the camera background thread, the arrays are reused for the next frame.
+     */
+    public interface FrameHistogramListener {
+        /**
+         * @param luma - 256 bins of the Y plane
+         * @param u - 256 bins of the U plane, null if chroma histograms are disabled
+         * @param v - 256 bins of the V plane, null if chroma histograms are disabled
+         */
+        public void onFrameHistogram(int[] luma, int[] u, int[] v, int width, int height);
+    }
+
+    /**
+     * Sets a listener that gets luma (and optionally chroma) histograms for every frame.
+     * The histograms are computed from the plane buffers before any Mat is created.
+     * @param listener - the listener, null to disable
+     * @param withChroma - also compute U and V histograms
+     * @param deliverFrames - false skips Mat wrapping, RGBA conversion and drawing entirely (histogram-only mode)
+     */
+    public void setFrameHistogramListener(FrameHistogramListener listener, boolean withChroma, boolean deliverFrames) {
+        if (withChroma && mHistogramU == null) {
+            mHistogramU = new int[PlaneHistogram.BINS];
+            mHistogramV = new int[PlaneHistogram.BINS];
+        }
+        mWithChroma = withChroma;
+        mDeliverFrames = deliverFrames || listener == null;
+        mHistogramListener = listener;
+    }
+
+    private void deliverPlaneHistograms(FrameHistogramListener listener, Image.Plane[] planes, int w, int h) {
+        PlaneHistogram.clear(mHistogramY);
+        Image.Plane y = planes[0];
+        mPlaneHistogram.accumulate(y.getBuffer(), w, h, y.getRowStride(), y.getPixelStride(), mHistogramY);
+        boolean withChroma = mWithChroma;
+        if (withChroma) {
+            PlaneHistogram.clear(mHistogramU);
+            PlaneHistogram.clear(mHistogramV);
+            Image.Plane u = planes[1];
+            Image.Plane v = planes[2];
+            mPlaneHistogram.accumulate(u.getBuffer(), w / 2, h / 2, u.getRowStride(), u.getPixelStride(), mHistogramU);
+            mPlaneHistogram.accumulate(v.getBuffer(), w / 2, h / 2, v.getRowStride(), v.getPixelStride(), mHistogramV);
+        }
+        listener.onFrameHistogram(mHistogramY, withChroma ? mHistogramU : null, withChroma ? mHistogramV : null, w, h);
+    }
+
     @Override
     protected void disconnectCamera() {
         Log.i(LOGTAG, "closeCamera");
@@ -246,6 +319,10 @@ public class JavaCamera2View extends CameraBridgeViewBase {
             }
         } finally {
             stopBackgroundThread();
+            if (mFrame != null) {
+                mFrame.release();
+                mFrame = null;
+            }
         }
     }
 
@@ -322,10 +399,20 @@ public class JavaCamera2View extends CameraBridgeViewBase {
         return true;
     }
 
+    /**
+     * Frame object reused for every Image. bind() wraps the plane buffers of the current Image,
+     * the RGBA scratch Mat keeps its native buffer between frames.
+     * Each frame still allocates two Mat headers (Y and interleaved UV planes), the pixel data is
+     * not copied. They can't be cached per plane buffer: every acquired Image hands out a new
+     * ByteBuffer object even when ImageReader recycles the underlying memory, and its address is
+     * only known once a Mat is constructed over it.
+     */
     private class JavaCamera2Frame implements CvCameraViewFrame {
         @Override
         public Mat gray() {
-            return mYuvFrameData.submat(0, mHeight, 0, mWidth);
+            // The Y plane Mat is exactly mHeight x mWidth, no submat needed. Like in JavaCameraView the
+            // frame owns it, it is released by unbind().
+            return mYuvFrameData;
         }
 
         @Override
@@ -343,32 +430,45 @@ public class JavaCamera2View extends CameraBridgeViewBase {
             return mRgba;
         }
 
-        public JavaCamera2Frame(Mat Yuv420sp, int width, int height) {
+        public JavaCamera2Frame(int width, int height) {
             super();
             mWidth = width;
             mHeight = height;
-            mYuvFrameData = Yuv420sp;
-            mUVFrameData = null;
-            mRgba = new Mat();
+            mRgba = new Mat(height, width, CvType.CV_8UC4);
         }
 
-        public JavaCamera2Frame(Mat Y, Mat UV, int width, int height) {
-            super();
-            mWidth = width;
-            mHeight = height;
-            mYuvFrameData = Y;
-            mUVFrameData = UV;
-            mRgba = new Mat();
+        /**
+         * Wraps the planes of the current Image. The two Mat headers are the only per-frame objects,
+         * the pixel data is never copied.
+         */
+        public void bind(ByteBuffer yPlane, ByteBuffer uvPlane) {
+            mYuvFrameData = new Mat(mHeight, mWidth, CvType.CV_8UC1, yPlane);
+            mUVFrameData = new Mat(mHeight / 2, mWidth / 2, CvType.CV_8UC2, uvPlane);
+        }
+
+        /**
+         * Drops the references to the Image buffers before the Image is closed.
+         */
+        public void unbind() {
+            if (mYuvFrameData != null) {
+                mYuvFrameData.release();
+                mYuvFrameData = null;
+            }
+            if (mUVFrameData != null) {
+                mUVFrameData.release();
+                mUVFrameData = null;
+            }
         }
 
         public void release() {
+            unbind();
             mRgba.release();
         }
 
         private Mat mYuvFrameData;
         private Mat mUVFrameData;
-        private Mat mRgba;
-        private int mWidth;
-        private int mHeight;
+        private final Mat mRgba;
+        private final int mWidth;
+        private final int mHeight;
     };
 }
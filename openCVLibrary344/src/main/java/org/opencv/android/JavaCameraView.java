@@ -32,16 +32,21 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
     private static final int MAGIC_TEXTURE_ID = 10;
     private static final String TAG = "JavaCameraView";
 
-    private byte mBuffer[];
+    private static final int CALLBACK_BUFFERS_COUNT = 3;
+
     private Mat[] mFrameChain;
-    private int mChainIdx = 0;
+    private FrameRing mFrameRing;
+    private long[] mFrameTimestamps;
+    private int mRingCapacity = 1;
     private Thread mThread;
-    private boolean mStopThread;
+    private volatile boolean mStopThread;
 
     protected Camera mCamera;
     protected JavaCameraFrame[] mCameraFrame;
     private SurfaceTexture mSurfaceTexture;
     private int mPreviewFormat = ImageFormat.NV21;
+    private volatile PreviewFrameConsumer mFrameConsumer;
+    private volatile boolean mDeliverFrames = true;
 
     public static class JavaCameraSizeAccessor implements ListItemAccessor {
 
@@ -190,20 +195,23 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
 
                     int size = mFrameWidth * mFrameHeight;
                     size  = size * ImageFormat.getBitsPerPixel(params.getPreviewFormat()) / 8;
-                    mBuffer = new byte[size];
-
-                    mCamera.addCallbackBuffer(mBuffer);
+                    /* A small pool, so the camera has a free buffer while consumers still work on the previous ones */
+                    for (int i = 0; i < CALLBACK_BUFFERS_COUNT; i++)
+                        mCamera.addCallbackBuffer(new byte[size]);
                     mCamera.setPreviewCallbackWithBuffer(this);
 
-                    mFrameChain = new Mat[2];
-                    mFrameChain[0] = new Mat(mFrameHeight + (mFrameHeight/2), mFrameWidth, CvType.CV_8UC1);
-                    mFrameChain[1] = new Mat(mFrameHeight + (mFrameHeight/2), mFrameWidth, CvType.CV_8UC1);
+                    mFrameRing = new FrameRing(mRingCapacity, FrameRing.POLICY_DROP_OLDEST);
+                    int slots = mFrameRing.getSlotsCount();
+                    mFrameChain = new Mat[slots];
+                    mFrameTimestamps = new long[slots];
+                    for (int i = 0; i < slots; i++)
+                        mFrameChain[i] = new Mat(mFrameHeight + (mFrameHeight/2), mFrameWidth, CvType.CV_8UC1);
 
                     AllocateCache();
 
-                    mCameraFrame = new JavaCameraFrame[2];
-                    mCameraFrame[0] = new JavaCameraFrame(mFrameChain[0], mFrameWidth, mFrameHeight);
-                    mCameraFrame[1] = new JavaCameraFrame(mFrameChain[1], mFrameWidth, mFrameHeight);
+                    mCameraFrame = new JavaCameraFrame[slots];
+                    for (int i = 0; i < slots; i++)
+                        mCameraFrame[i] = new JavaCameraFrame(mFrameChain[i], mFrameWidth, mFrameHeight);
 
                     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
                         mSurfaceTexture = new SurfaceTexture(MAGIC_TEXTURE_ID);
@@ -236,17 +244,46 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
             }
             mCamera = null;
             if (mFrameChain != null) {
-                mFrameChain[0].release();
-                mFrameChain[1].release();
+                for (Mat m : mFrameChain)
+                    m.release();
             }
             if (mCameraFrame != null) {
-                mCameraFrame[0].release();
-                mCameraFrame[1].release();
+                for (JavaCameraFrame f : mCameraFrame)
+                    f.release();
             }
         }
     }
 
-    private boolean mCameraFrameReady = false;
+    /**
+     * Configures the queue between the camera callback and the processing thread, the oldest
+     * queued frame is dropped when it is full. Takes effect on the next camera connection.
+     * FrameRing.POLICY_BLOCK is not offered here: preview callbacks run on the looper of the thread
+     * that opened the camera (the UI thread), which must never wait for the processing thread.
+     * @param capacity - the maximum number of frames waiting to be processed
+     */
+    public void setFrameQueue(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be >= 1");
+        mRingCapacity = capacity;
+    }
+
+    /**
+     * Number of frames dropped because the processing thread was too slow (since the camera was connected).
+     */
+    public long getDroppedFramesCount() {
+        FrameRing ring = mFrameRing;
+        return ring != null ? ring.getDroppedCount() : 0;
+    }
+
+    public long getProcessedFramesCount() {
+        FrameRing ring = mFrameRing;
+        return ring != null ? ring.getProcessedCount() : 0;
+    }
+
+    public int getQueuedFramesCount() {
+        FrameRing ring = mFrameRing;
+        return ring != null ? ring.getQueuedCount() : 0;
+    }
 
     @Override
     protected boolean connectCamera(int width, int height) {
@@ -259,8 +296,6 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
         if (!initializeCamera(width, height))
             return false;
 
-        mCameraFrameReady = false;
-
         /* now we can start update thread */
         Log.d(TAG, "Starting processing thread");
         mStopThread = false;
@@ -279,9 +314,8 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
         try {
             mStopThread = true;
             Log.d(TAG, "Notify thread");
-            synchronized (this) {
-                this.notify();
-            }
+            if (mFrameRing != null)
+                mFrameRing.close();
             Log.d(TAG, "Waiting for thread");
             if (mThread != null)
                 mThread.join();
@@ -293,27 +327,54 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
 
         /* Now release camera */
         releaseCamera();
+    }
 
-        mCameraFrameReady = false;
+    /**
+     * Receives the raw preview callback buffer (NV21 or YV12) before it is copied anywhere.
+     * Called on the camera callback thread. The buffer is handed back to the camera right after
+     * the call returns, so it must not be kept.
+     */
+    public interface PreviewFrameConsumer {
+        public void onPreviewFrame(byte[] data, int width, int height, int format);
+    }
+
+    /**
+     * Sets a consumer that works on the preview buffers in place.
+     * @param consumer - the consumer, null to disable
+     * @param deliverFrames - false skips the copy into the frame Mats and the processing thread (statistics-only mode)
+     */
+    public void setPreviewFrameConsumer(PreviewFrameConsumer consumer, boolean deliverFrames) {
+        mDeliverFrames = deliverFrames || consumer == null;
+        mFrameConsumer = consumer;
     }
 
     @Override
     public void onPreviewFrame(byte[] frame, Camera arg1) {
         if (BuildConfig.DEBUG)
             Log.d(TAG, "Preview Frame received. Frame size: " + frame.length);
-        synchronized (this) {
-            mFrameChain[mChainIdx].put(0, 0, frame);
-            mCameraFrameReady = true;
-            this.notify();
+        PreviewFrameConsumer consumer = mFrameConsumer;
+        if (consumer != null)
+            consumer.onPreviewFrame(frame, mFrameWidth, mFrameHeight, mPreviewFormat);
+        FrameRing ring = mFrameRing;
+        if ((consumer == null || mDeliverFrames) && ring != null) {
+            int slot = ring.acquireWrite();
+            if (slot >= 0) {
+                mFrameChain[slot].put(0, 0, frame);
+                mFrameTimestamps[slot] = System.nanoTime();
+                ring.publish(slot);
+            }
         }
         if (mCamera != null)
-            mCamera.addCallbackBuffer(mBuffer);
+            mCamera.addCallbackBuffer(frame);
     }
 
     private class JavaCameraFrame implements CvCameraViewFrame {
         @Override
         public Mat gray() {
-            return mYuvFrameData.submat(0, mHeight, 0, mWidth);
+            // Shares the data of the frame buffer, which is refilled in place for every frame.
+            if (mGray == null)
+                mGray = mYuvFrameData.submat(0, mHeight, 0, mWidth);
+            return mGray;
         }
 
         @Override
@@ -337,10 +398,15 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
         }
 
         public void release() {
+            if (mGray != null) {
+                mGray.release();
+                mGray = null;
+            }
             mRgba.release();
         }
 
         private Mat mYuvFrameData;
+        private Mat mGray;
         private Mat mRgba;
         private int mWidth;
         private int mHeight;
@@ -350,28 +416,15 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
 
         @Override
         public void run() {
+            FrameRing ring = mFrameRing;
             do {
-                boolean hasFrame = false;
-                synchronized (JavaCameraView.this) {
-                    try {
-                        while (!mCameraFrameReady && !mStopThread) {
-                            JavaCameraView.this.wait();
-                        }
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                    if (mCameraFrameReady)
-                    {
-                        mChainIdx = 1 - mChainIdx;
-                        mCameraFrameReady = false;
-                        hasFrame = true;
-                    }
-                }
-
-                if (!mStopThread && hasFrame) {
-                    if (!mFrameChain[1 - mChainIdx].empty())
-                        deliverAndDrawFrame(mCameraFrame[1 - mChainIdx]);
-                }
+                int slot = ring.acquireRead();
+                if (slot < 0)
+                    break;
+                recordFrameStage(FrameMetrics.STAGE_QUEUE, System.nanoTime() - mFrameTimestamps[slot]);
+                if (!mStopThread && !mFrameChain[slot].empty())
+                    deliverAndDrawFrame(mCameraFrame[slot]);
+                ring.release(slot);
             } while (!mStopThread);
             Log.d(TAG, "Finish processing thread");
         }
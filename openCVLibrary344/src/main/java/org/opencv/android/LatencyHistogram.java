@@ -0,0 +1,85 @@
+package org.opencv.android;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-memory latency histogram with log-linear buckets (8 sub-buckets per power of two,
+ * so every reported percentile is within 12.5% of the recorded value).
+ * Values are recorded in nanoseconds and kept with microsecond resolution, up to ~2^40 us.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MSB = 40;
+    private static final int BUCKETS = (MAX_MSB - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final long[] mCounts = new long[BUCKETS];
+    private long mCount;
+    private long mMaxMicros;
+    private long mSumMicros;
+
+    public synchronized void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        mCounts[bucketOf(micros)]++;
+        mCount++;
+        mSumMicros += micros;
+        if (micros > mMaxMicros)
+            mMaxMicros = micros;
+    }
+
+    public synchronized long getCount() {
+        return mCount;
+    }
+
+    public synchronized long getMaxMicros() {
+        return mMaxMicros;
+    }
+
+    public synchronized double getMeanMicros() {
+        return mCount == 0 ? 0 : (double) mSumMicros / mCount;
+    }
+
+    /**
+     * @param percentile - in <0;100>
+     * @return the upper bound (in microseconds) of the bucket holding the given percentile, 0 if empty
+     */
+    public synchronized long getPercentileMicros(double percentile) {
+        if (mCount == 0)
+            return 0;
+        long rank = (long) Math.ceil(Math.min(100.0, Math.max(0.0, percentile)) / 100.0 * mCount);
+        rank = Math.max(1, rank);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += mCounts[i];
+            if (seen >= rank)
+                return Math.min(upperBoundOf(i), mMaxMicros);
+        }
+        return mMaxMicros;
+    }
+
+    public synchronized void reset() {
+        Arrays.fill(mCounts, 0);
+        mCount = 0;
+        mMaxMicros = 0;
+        mSumMicros = 0;
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS)
+            return (int) micros;
+        int msb = 63 - Long.numberOfLeadingZeros(micros);
+        if (msb > MAX_MSB)
+            return BUCKETS - 1;
+        int shift = msb - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((micros >> shift) & (SUB_BUCKETS - 1));
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+}
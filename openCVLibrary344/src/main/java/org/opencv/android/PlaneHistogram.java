@@ -0,0 +1,99 @@
+package org.opencv.android;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Histograms computed directly from 8-bit image planes (e.g. the planes of a YUV_420_888 Image
+ * or an NV21 preview buffer), without wrapping them into Mats or converting them to RGBA.
+ * Rows are bulk-copied into a reusable scratch row, so steady state use does not allocate.
+ */
+public class PlaneHistogram {
+
+    public static final int BINS = 256;
+
+    private byte[] mRow = new byte[0];
+
+    /**
+     * Adds {@code width x height} samples of the plane to {@code histogram}.
+     * @param plane - plane buffer, read from its current position, which is not modified
+     * @param rowStride - distance in bytes between the starts of two rows
+     * @param pixelStride - distance in bytes between two samples of a row (1 for Y, 2 for interleaved UV)
+     */
+    public void accumulate(ByteBuffer plane, int width, int height, int rowStride, int pixelStride, int[] histogram) {
+        ByteBuffer buffer = plane.duplicate();
+        int base = buffer.position();
+        int rowBytes = (width - 1) * pixelStride + 1;
+        byte[] row = scratch(rowBytes);
+        for (int y = 0; y < height; y++) {
+            buffer.position(base + y * rowStride);
+            buffer.get(row, 0, rowBytes);
+            accumulateRow(row, 0, width, pixelStride, histogram);
+        }
+    }
+
+    /**
+     * Adds {@code width x height} samples of a plane stored in a byte array (e.g. the Y plane of an NV21 buffer).
+     */
+    public static void accumulate(byte[] plane, int offset, int width, int height, int rowStride, int[] histogram) {
+        for (int y = 0; y < height; y++) {
+            accumulateRow(plane, offset + y * rowStride, width, 1, histogram);
+        }
+    }
+
+    /**
+     * Adds the interleaved V/U samples of the chroma part of an NV21 buffer.
+     */
+    public static void accumulateInterleaved(byte[] plane, int offset, int width, int height, int rowStride, int[] first, int[] second) {
+        for (int y = 0; y < height; y++) {
+            accumulateInterleavedRow(plane, offset + y * rowStride, width, first, second);
+        }
+    }
+
+    /**
+     * Adds the Y samples and, if {@code u} and {@code v} are not null, the interleaved chroma samples
+     * of an NV21 buffer (as delivered by JavaCameraView.PreviewFrameConsumer).
+     */
+    public static void accumulateNV21(byte[] data, int width, int height, int[] luma, int[] u, int[] v) {
+        accumulate(data, 0, width, height, width, luma);
+        if (u != null && v != null)
+            accumulateInterleaved(data, width * height, width / 2, height / 2, width, v, u);
+    }
+
+    public static void clear(int[] histogram) {
+        if (histogram != null) {
+            Arrays.fill(histogram, 0);
+        }
+    }
+
+    private static void accumulateRow(byte[] row, int offset, int width, int pixelStride, int[] histogram) {
+        int end = offset + width * pixelStride;
+        int i = offset;
+        if (pixelStride == 1) {
+            int unrolledEnd = offset + (width & ~3);
+            for (; i < unrolledEnd; i += 4) {
+                histogram[row[i] & 0xFF]++;
+                histogram[row[i + 1] & 0xFF]++;
+                histogram[row[i + 2] & 0xFF]++;
+                histogram[row[i + 3] & 0xFF]++;
+            }
+        }
+        for (; i < end; i += pixelStride) {
+            histogram[row[i] & 0xFF]++;
+        }
+    }
+
+    private static void accumulateInterleavedRow(byte[] row, int offset, int width, int[] first, int[] second) {
+        int end = offset + width * 2;
+        for (int i = offset; i < end; i += 2) {
+            first[row[i] & 0xFF]++;
+            second[row[i + 1] & 0xFF]++;
+        }
+    }
+
+    private byte[] scratch(int size) {
+        if (mRow.length < size)
+            mRow = new byte[size];
+        return mRow;
+    }
+}
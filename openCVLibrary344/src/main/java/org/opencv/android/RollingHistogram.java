@@ -0,0 +1,155 @@
+package org.opencv.android;
+
+import java.util.Arrays;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+/**
+ * Temporal luminance histogram for live preview consumers (e.g. CvCameraViewListener2).
+ * Rows are sampled interlaced: frame k only reads the rows with {@code y % phases == k % phases},
+ * which cuts the per-frame cost by a factor of {@code phases}.
+ * In MODE_SLIDING_WINDOW the per-phase partial histograms are kept, so after {@code phases} frames
+ * of a static scene the result equals the exact full-frame histogram.
+ * In MODE_EXPONENTIAL every partial (scaled to a full frame) is blended into an exponentially
+ * decayed histogram, which reacts smoothly to scene changes.
+ */
+public class RollingHistogram {
+
+    public static final int MODE_SLIDING_WINDOW = 1;
+    public static final int MODE_EXPONENTIAL = 2;
+
+    public static final int BINS = PlaneHistogram.BINS;
+
+    private final int mMode;
+    private final int mPhases;
+    private final float mDecay;
+    private final int[][] mPartials;
+    private final int[] mTotal = new int[BINS];
+    private final float[] mDecayed = new float[BINS];
+    private byte[] mRow = new byte[0];
+    private int mPhase;
+    private long mFrames;
+
+    /**
+     * Sliding window histogram, exact after {@code phases} frames.
+     */
+    public RollingHistogram(int phases) {
+        this(MODE_SLIDING_WINDOW, phases, 0f);
+    }
+
+    /**
+     * @param mode - MODE_SLIDING_WINDOW or MODE_EXPONENTIAL
+     * @param phases - number of interlaced row subsets, 1 processes every row on every frame
+     * @param decay - weight of the newest frame in MODE_EXPONENTIAL, in (0;1]
+     */
+    public RollingHistogram(int mode, int phases, float decay) {
+        if (phases < 1)
+            throw new IllegalArgumentException("phases must be >= 1");
+        if (mode != MODE_SLIDING_WINDOW && mode != MODE_EXPONENTIAL)
+            throw new IllegalArgumentException("Unknown mode " + mode);
+        if (mode == MODE_EXPONENTIAL && (decay <= 0f || decay > 1f))
+            throw new IllegalArgumentException("decay must be in (0;1]");
+        mMode = mode;
+        mPhases = phases;
+        mDecay = decay;
+        mPartials = new int[phases][BINS];
+    }
+
+    /**
+     * Updates the histogram from the gray (Y) plane of a camera frame, no RGBA conversion is done.
+     * The gray Mat belongs to the frame and is not released here. Both camera views cache it per frame
+     * buffer, so no Mat header is allocated per update.
+     */
+    public void update(CameraBridgeViewBase.CvCameraViewFrame frame) {
+        update(frame.gray());
+    }
+
+    /**
+     * Updates the histogram from a single channel 8-bit Mat.
+     */
+    public void update(Mat gray) {
+        if (gray.type() != CvType.CV_8UC1)
+            throw new IllegalArgumentException("Expected CV_8UC1 Mat, got " + CvType.typeToString(gray.type()));
+        int width = gray.cols();
+        // Mat.get reads as many bytes as the array holds, so the row buffer must match the width exactly.
+        if (mRow.length != width)
+            mRow = new byte[width];
+        int[] partial = beginPhase();
+        for (int y = mPhase; y < gray.rows(); y += mPhases) {
+            gray.get(y, 0, mRow);
+            for (int x = 0; x < width; x++)
+                partial[mRow[x] & 0xFF]++;
+        }
+        endPhase(partial);
+    }
+
+    /**
+     * Updates the histogram from an 8-bit plane in a byte array (e.g. the Y plane of an NV21 buffer).
+     */
+    public void update(byte[] plane, int offset, int width, int height, int rowStride) {
+        int[] partial = beginPhase();
+        for (int y = mPhase; y < height; y += mPhases) {
+            int start = offset + y * rowStride;
+            int end = start + width;
+            for (int i = start; i < end; i++)
+                partial[plane[i] & 0xFF]++;
+        }
+        endPhase(partial);
+    }
+
+    /**
+     * Copies the current estimate of the full-frame histogram into {@code target}.
+     */
+    public float[] getHistogram(float[] target) {
+        if (mMode == MODE_EXPONENTIAL) {
+            System.arraycopy(mDecayed, 0, target, 0, BINS);
+        } else {
+            for (int i = 0; i < BINS; i++)
+                target[i] = mTotal[i];
+        }
+        return target;
+    }
+
+    /**
+     * True once every row subset has been sampled at least once.
+     */
+    public boolean isConverged() {
+        return mFrames >= mPhases;
+    }
+
+    public long getFrameCount() {
+        return mFrames;
+    }
+
+    public void reset() {
+        for (int[] partial : mPartials)
+            Arrays.fill(partial, 0);
+        Arrays.fill(mTotal, 0);
+        Arrays.fill(mDecayed, 0f);
+        mPhase = 0;
+        mFrames = 0;
+    }
+
+    private int[] beginPhase() {
+        int[] partial = mPartials[mPhase];
+        for (int i = 0; i < BINS; i++) {
+            mTotal[i] -= partial[i];
+            partial[i] = 0;
+        }
+        return partial;
+    }
+
+    private void endPhase(int[] partial) {
+        for (int i = 0; i < BINS; i++)
+            mTotal[i] += partial[i];
+        if (mMode == MODE_EXPONENTIAL) {
+            // The first frame initializes the estimate, later ones are blended in.
+            float weight = mFrames == 0 ? 1f : mDecay;
+            for (int i = 0; i < BINS; i++)
+                mDecayed[i] += weight * (partial[i] * mPhases - mDecayed[i]);
+        }
+        mPhase = (mPhase + 1) % mPhases;
+        mFrames++;
+    }
+}
@@ -1,6 +1,9 @@
 package org.opencv.core;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 
 // C++: class Mat
 //javadoc: Mat
@@ -8,11 +11,16 @@ public class Mat {
 
     public final long nativeObj;
 
+    // Keeps the memory of a Mat constructed over a Java buffer alive and accessible without copies.
+    private ByteBuffer mBuffer;
+    private long mBufferDataAddr;
+
     public Mat(long addr)
     {
         if (addr == 0)
             throw new java.lang.UnsupportedOperationException("Native object address is NULL");
         nativeObj = addr;
+        onCreated();
     }
 
     //
@@ -24,6 +32,7 @@ public class Mat {
     {
 
         nativeObj = n_Mat();
+        onCreated();
 
         return;
     }
@@ -37,6 +46,7 @@ public class Mat {
     {
 
         nativeObj = n_Mat(rows, cols, type);
+        onCreated();
 
         return;
     }
@@ -50,6 +60,9 @@ public class Mat {
     {
 
         nativeObj = n_Mat(rows, cols, type, data);
+        mBuffer = data;
+        mBufferDataAddr = n_dataAddr(nativeObj);
+        onCreated();
 
         return;
     }
@@ -63,6 +76,7 @@ public class Mat {
     {
 
         nativeObj = n_Mat(size.width, size.height, type);
+        onCreated();
 
         return;
     }
@@ -76,6 +90,7 @@ public class Mat {
     {
 
         nativeObj = n_Mat(rows, cols, type, s.val[0], s.val[1], s.val[2], s.val[3]);
+        onCreated();
 
         return;
     }
@@ -89,6 +104,7 @@ public class Mat {
     {
 
         nativeObj = n_Mat(size.width, size.height, type, s.val[0], s.val[1], s.val[2], s.val[3]);
+        onCreated();
 
         return;
     }
@@ -102,6 +118,7 @@ public class Mat {
     {
 
         nativeObj = n_Mat(m.nativeObj, rowRange.start, rowRange.end, colRange.start, colRange.end);
+        onCreated();
 
         return;
     }
@@ -111,6 +128,7 @@ public class Mat {
     {
 
         nativeObj = n_Mat(m.nativeObj, rowRange.start, rowRange.end);
+        onCreated();
 
         return;
     }
@@ -124,6 +142,7 @@ public class Mat {
     {
 
         nativeObj = n_Mat(m.nativeObj, roi.y, roi.y + roi.height, roi.x, roi.x + roi.width);
+        onCreated();
 
         return;
     }
@@ -353,6 +372,7 @@ public class Mat {
     {
 
         n_create(nativeObj, rows, cols, type);
+        MatAllocationTracker.onResized(this);
 
         return;
     }
@@ -366,6 +386,7 @@ public class Mat {
     {
 
         n_create(nativeObj, size.width, size.height, type);
+        MatAllocationTracker.onResized(this);
 
         return;
     }
@@ -654,6 +675,7 @@ public class Mat {
     public void release()
     {
 
+        MatAllocationTracker.onReleased(this);
         n_release(nativeObj);
 
         return;
@@ -945,8 +967,62 @@ public class Mat {
         return retVal;
     }
 
+    /**
+     * Allocates a continuous Mat over a new direct ByteBuffer, so its pixels can be read and written
+     * in place through {@link #getByteBuffer()} instead of get()/put() array copies.
+     */
+    public static Mat allocateDirect(int rows, int cols, int type)
+    {
+        long bytes = (long) rows * cols * CvType.ELEM_SIZE(type);
+        if (rows < 0 || cols < 0 || bytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Cannot allocate a direct buffer for " + rows + "x" + cols + " " + CvType.typeToString(type));
+        ByteBuffer data = ByteBuffer.allocateDirect((int) bytes);
+        return new Mat(rows, cols, type, data);
+    }
+
+    /**
+     * Zero-copy view of the pixel data in native byte order, for Mats constructed over a ByteBuffer
+     * (see {@link #allocateDirect(int, int, int)}). Returns null for other Mats, or once OpenCV has
+     * reallocated the data (e.g. an output argument of a different size), since the view would then be stale.
+     */
+    public ByteBuffer getByteBuffer()
+    {
+        if (mBuffer == null || n_dataAddr(nativeObj) != mBufferDataAddr)
+            return null;
+        ByteBuffer view = mBuffer.duplicate();
+        view.clear();
+        // The buffer may be larger than the pixel data (e.g. a camera plane).
+        view.limit((int) (total() * elemSize()));
+        return view.order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * View of CV_32S data, see {@link #getByteBuffer()}.
+     */
+    public IntBuffer getIntBuffer()
+    {
+        ByteBuffer view = getByteBuffer();
+        return view != null ? view.asIntBuffer() : null;
+    }
+
+    /**
+     * View of CV_32F data, see {@link #getByteBuffer()}.
+     */
+    public FloatBuffer getFloatBuffer()
+    {
+        ByteBuffer view = getByteBuffer();
+        return view != null ? view.asFloatBuffer() : null;
+    }
+
+    // Every constructor ends here: registers the Mat with the active MatScope and the allocation tracker.
+    private void onCreated() {
+        MatScope.track(this);
+        MatAllocationTracker.onCreated(this);
+    }
+
     @Override
     protected void finalize() throws Throwable {
+        MatAllocationTracker.onFinalized(this);
         n_delete(nativeObj);
         super.finalize();
     }
@@ -1129,6 +1205,124 @@ public class Mat {
         throw new java.lang.UnsupportedOperationException("Mat data type is not compatible: " + t);
     }
 
+    /**
+     * Reads {@code length} values into {@code data} starting at {@code offset}, so a caller-supplied
+     * buffer can be reused across calls. Returns the number of bytes read, like get(row, col, data).
+     */
+    public int get(int row, int col, byte[] data, int offset, int length) {
+        int t = type();
+        if (data == null || length % CvType.channels(t) != 0)
+            throw new java.lang.UnsupportedOperationException(
+                    "Provided data element number (" +
+                            (data == null ? 0 : length) +
+                            ") should be multiple of the Mat channels count (" +
+                            CvType.channels(t) + ")");
+        if (offset < 0 || length < 0 || offset + length > data.length)
+            throw new java.lang.IndexOutOfBoundsException("offset " + offset + ", length " + length + ", array " + data.length);
+        if (CvType.depth(t) == CvType.CV_8U || CvType.depth(t) == CvType.CV_8S) {
+            if (offset == 0)
+                return nGetB(nativeObj, row, col, length, data);
+            // Without a native offset variant the values go through a reused per-thread array.
+            byte[] scratch = MatScratch.bytes(length);
+            int res = nGetB(nativeObj, row, col, length, scratch);
+            System.arraycopy(scratch, 0, data, offset, Math.min(length, res / 1));
+            return res;
+        }
+        throw new java.lang.UnsupportedOperationException("Mat data type is not compatible: " + t);
+    }
+
+    // javadoc:Mat::get(row,col,data,offset,length)
+    public int get(int row, int col, short[] data, int offset, int length) {
+        int t = type();
+        if (data == null || length % CvType.channels(t) != 0)
+            throw new java.lang.UnsupportedOperationException(
+                    "Provided data element number (" +
+                            (data == null ? 0 : length) +
+                            ") should be multiple of the Mat channels count (" +
+                            CvType.channels(t) + ")");
+        if (offset < 0 || length < 0 || offset + length > data.length)
+            throw new java.lang.IndexOutOfBoundsException("offset " + offset + ", length " + length + ", array " + data.length);
+        if (CvType.depth(t) == CvType.CV_16U || CvType.depth(t) == CvType.CV_16S) {
+            if (offset == 0)
+                return nGetS(nativeObj, row, col, length, data);
+            // Without a native offset variant the values go through a reused per-thread array.
+            short[] scratch = MatScratch.shorts(length);
+            int res = nGetS(nativeObj, row, col, length, scratch);
+            System.arraycopy(scratch, 0, data, offset, Math.min(length, res / 2));
+            return res;
+        }
+        throw new java.lang.UnsupportedOperationException("Mat data type is not compatible: " + t);
+    }
+
+    // javadoc:Mat::get(row,col,data,offset,length)
+    public int get(int row, int col, int[] data, int offset, int length) {
+        int t = type();
+        if (data == null || length % CvType.channels(t) != 0)
+            throw new java.lang.UnsupportedOperationException(
+                    "Provided data element number (" +
+                            (data == null ? 0 : length) +
+                            ") should be multiple of the Mat channels count (" +
+                            CvType.channels(t) + ")");
+        if (offset < 0 || length < 0 || offset + length > data.length)
+            throw new java.lang.IndexOutOfBoundsException("offset " + offset + ", length " + length + ", array " + data.length);
+        if (CvType.depth(t) == CvType.CV_32S) {
+            if (offset == 0)
+                return nGetI(nativeObj, row, col, length, data);
+            // Without a native offset variant the values go through a reused per-thread array.
+            int[] scratch = MatScratch.ints(length);
+            int res = nGetI(nativeObj, row, col, length, scratch);
+            System.arraycopy(scratch, 0, data, offset, Math.min(length, res / 4));
+            return res;
+        }
+        throw new java.lang.UnsupportedOperationException("Mat data type is not compatible: " + t);
+    }
+
+    // javadoc:Mat::get(row,col,data,offset,length)
+    public int get(int row, int col, float[] data, int offset, int length) {
+        int t = type();
+        if (data == null || length % CvType.channels(t) != 0)
+            throw new java.lang.UnsupportedOperationException(
+                    "Provided data element number (" +
+                            (data == null ? 0 : length) +
+                            ") should be multiple of the Mat channels count (" +
+                            CvType.channels(t) + ")");
+        if (offset < 0 || length < 0 || offset + length > data.length)
+            throw new java.lang.IndexOutOfBoundsException("offset " + offset + ", length " + length + ", array " + data.length);
+        if (CvType.depth(t) == CvType.CV_32F) {
+            if (offset == 0)
+                return nGetF(nativeObj, row, col, length, data);
+            // Without a native offset variant the values go through a reused per-thread array.
+            float[] scratch = MatScratch.floats(length);
+            int res = nGetF(nativeObj, row, col, length, scratch);
+            System.arraycopy(scratch, 0, data, offset, Math.min(length, res / 4));
+            return res;
+        }
+        throw new java.lang.UnsupportedOperationException("Mat data type is not compatible: " + t);
+    }
+
+    // javadoc:Mat::get(row,col,data,offset,length)
+    public int get(int row, int col, double[] data, int offset, int length) {
+        int t = type();
+        if (data == null || length % CvType.channels(t) != 0)
+            throw new java.lang.UnsupportedOperationException(
+                    "Provided data element number (" +
+                            (data == null ? 0 : length) +
+                            ") should be multiple of the Mat channels count (" +
+                            CvType.channels(t) + ")");
+        if (offset < 0 || length < 0 || offset + length > data.length)
+            throw new java.lang.IndexOutOfBoundsException("offset " + offset + ", length " + length + ", array " + data.length);
+        if (CvType.depth(t) == CvType.CV_64F) {
+            if (offset == 0)
+                return nGetD(nativeObj, row, col, length, data);
+            // Without a native offset variant the values go through a reused per-thread array.
+            double[] scratch = MatScratch.doubles(length);
+            int res = nGetD(nativeObj, row, col, length, scratch);
+            System.arraycopy(scratch, 0, data, offset, Math.min(length, res / 8));
+            return res;
+        }
+        throw new java.lang.UnsupportedOperationException("Mat data type is not compatible: " + t);
+    }
+
     // javadoc:Mat::get(row,col)
     public double[] get(int row, int col) {
         return nGet(nativeObj, row, col);
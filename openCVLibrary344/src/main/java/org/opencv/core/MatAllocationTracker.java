@@ -0,0 +1,257 @@
+package org.opencv.core;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Opt-in accounting of the native memory held by Mats, which is invisible to the Java heap profiler.
+ * While enabled, every Mat constructed, created, released and finalized is recorded with its size
+ * (elemSize() * total()) and optionally the call site that constructed it. The tracker reports
+ * live count and bytes, their high-water marks, and the Mats that were finalized without release(),
+ * grouped by call site.
+ *
+ * Sizes are measured when the tracker sees the Mat. OpenCV functions that reallocate an output Mat
+ * natively are picked up by {@link #refresh()}, which re-measures all live Mats.
+ * Submatrices and Mats over external buffers are counted with their own size even though they don't
+ * own the memory.
+ */
+public final class MatAllocationTracker {
+
+    private static final String UNKNOWN_CALL_SITE = "<unknown>";
+
+    private static volatile boolean sEnabled;
+    private static boolean sRecordCallSites;
+
+    private static final Map<Long, Entry> sLive = new HashMap<Long, Entry>();
+    private static final Map<String, long[]> sLeaks = new HashMap<String, long[]>();
+    private static long sLiveBytes;
+    private static long sPeakBytes;
+    private static int sPeakCount;
+    private static long sLeakedCount;
+    private static long sLeakedBytes;
+
+    private static class Entry {
+        final WeakReference<Mat> mat;
+        final String callSite;
+        long bytes;
+        boolean released;
+
+        Entry(Mat mat, String callSite) {
+            this.mat = new WeakReference<Mat>(mat);
+            this.callSite = callSite;
+        }
+    }
+
+    private MatAllocationTracker() {
+    }
+
+    /**
+     * Starts tracking the Mats constructed from now on.
+     *
+     * @param recordCallSites - captures a stack trace per Mat to attribute it to its call site,
+     *                        this is expensive and meant for debugging sessions
+     */
+    public static synchronized void enable(boolean recordCallSites) {
+        sRecordCallSites = recordCallSites;
+        sEnabled = true;
+    }
+
+    /**
+     * Stops tracking and forgets everything recorded so far.
+     */
+    public static synchronized void disable() {
+        sEnabled = false;
+        reset();
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    public static synchronized void reset() {
+        sLive.clear();
+        sLeaks.clear();
+        sLiveBytes = 0;
+        sPeakBytes = 0;
+        sPeakCount = 0;
+        sLeakedCount = 0;
+        sLeakedBytes = 0;
+    }
+
+    /**
+     * @return the number of tracked Mats not finalized yet, released ones included (their header is still allocated)
+     */
+    public static synchronized int getLiveCount() {
+        return sLive.size();
+    }
+
+    public static synchronized long getLiveBytes() {
+        return sLiveBytes;
+    }
+
+    public static synchronized int getPeakCount() {
+        return sPeakCount;
+    }
+
+    public static synchronized long getPeakBytes() {
+        return sPeakBytes;
+    }
+
+    /**
+     * @return the number of Mats that held data when finalized without release()
+     */
+    public static synchronized long getLeakedCount() {
+        return sLeakedCount;
+    }
+
+    public static synchronized long getLeakedBytes() {
+        return sLeakedBytes;
+    }
+
+    /**
+     * Re-measures every live Mat, for sizes changed by native reallocation.
+     */
+    public static synchronized void refresh() {
+        for (Entry entry : sLive.values()) {
+            Mat mat = entry.mat.get();
+            if (mat != null)
+                update(entry, measure(mat));
+        }
+    }
+
+    /**
+     * @return live bytes per call site, largest first
+     */
+    public static synchronized List<Map.Entry<String, Long>> getLiveBytesByCallSite() {
+        Map<String, Long> sites = new HashMap<String, Long>();
+        for (Entry entry : sLive.values()) {
+            Long bytes = sites.get(entry.callSite);
+            sites.put(entry.callSite, (bytes != null ? bytes : 0L) + entry.bytes);
+        }
+        List<Map.Entry<String, Long>> result = new ArrayList<Map.Entry<String, Long>>(sites.entrySet());
+        Collections.sort(result, new Comparator<Map.Entry<String, Long>>() {
+            @Override
+            public int compare(Map.Entry<String, Long> a, Map.Entry<String, Long> b) {
+                return b.getValue().compareTo(a.getValue());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Live memory per call site and Mats finalized without release(), as text for logging.
+     */
+    public static synchronized String report() {
+        refresh();
+        StringBuilder sb = new StringBuilder();
+        sb.append("Mats live: ").append(sLive.size()).append(" (").append(sLiveBytes).append(" bytes), peak: ")
+                .append(sPeakCount).append(" (").append(sPeakBytes).append(" bytes)\n");
+        for (Map.Entry<String, Long> site : getLiveBytesByCallSite())
+            sb.append("  live ").append(site.getValue()).append(" bytes at ").append(site.getKey()).append('\n');
+        sb.append("Mats finalized without release(): ").append(sLeakedCount).append(" (").append(sLeakedBytes).append(" bytes)\n");
+        List<Map.Entry<String, long[]>> leaks = new ArrayList<Map.Entry<String, long[]>>(sLeaks.entrySet());
+        Collections.sort(leaks, new Comparator<Map.Entry<String, long[]>>() {
+            @Override
+            public int compare(Map.Entry<String, long[]> a, Map.Entry<String, long[]> b) {
+                return Long.compare(b.getValue()[1], a.getValue()[1]);
+            }
+        });
+        for (Map.Entry<String, long[]> leak : leaks)
+            sb.append("  leaked ").append(leak.getValue()[0]).append(" Mats, ").append(leak.getValue()[1])
+                    .append(" bytes at ").append(leak.getKey()).append('\n');
+        return sb.toString();
+    }
+
+    static void onCreated(Mat mat) {
+        if (!sEnabled)
+            return;
+        String callSite = sRecordCallSites ? callSite() : UNKNOWN_CALL_SITE;
+        long bytes = measure(mat);
+        synchronized (MatAllocationTracker.class) {
+            if (!sEnabled)
+                return;
+            Entry entry = new Entry(mat, callSite);
+            Entry previous = sLive.put(mat.nativeObj, entry);
+            if (previous != null)
+                sLiveBytes -= previous.bytes;
+            update(entry, bytes);
+            if (sLive.size() > sPeakCount)
+                sPeakCount = sLive.size();
+        }
+    }
+
+    static void onResized(Mat mat) {
+        if (!sEnabled)
+            return;
+        long bytes = measure(mat);
+        synchronized (MatAllocationTracker.class) {
+            Entry entry = sLive.get(mat.nativeObj);
+            if (entry != null) {
+                entry.released = false;
+                update(entry, bytes);
+            }
+        }
+    }
+
+    static void onReleased(Mat mat) {
+        if (!sEnabled)
+            return;
+        synchronized (MatAllocationTracker.class) {
+            Entry entry = sLive.get(mat.nativeObj);
+            if (entry != null) {
+                entry.released = true;
+                update(entry, 0);
+            }
+        }
+    }
+
+    static void onFinalized(Mat mat) {
+        if (!sEnabled)
+            return;
+        long bytes = measure(mat);
+        synchronized (MatAllocationTracker.class) {
+            Entry entry = sLive.remove(mat.nativeObj);
+            if (entry == null)
+                return;
+            sLiveBytes -= entry.bytes;
+            if (!entry.released && bytes > 0) {
+                sLeakedCount++;
+                sLeakedBytes += bytes;
+                long[] leak = sLeaks.get(entry.callSite);
+                if (leak == null) {
+                    leak = new long[2];
+                    sLeaks.put(entry.callSite, leak);
+                }
+                leak[0]++;
+                leak[1] += bytes;
+            }
+        }
+    }
+
+    private static void update(Entry entry, long bytes) {
+        sLiveBytes += bytes - entry.bytes;
+        entry.bytes = bytes;
+        if (sLiveBytes > sPeakBytes)
+            sPeakBytes = sLiveBytes;
+    }
+
+    private static long measure(Mat mat) {
+        return mat.elemSize() * mat.total();
+    }
+
+    // The first frame outside of the generated OpenCV wrappers, camera classes in org.opencv.android count as callers.
+    private static String callSite() {
+        StackTraceElement[] stack = new Throwable().getStackTrace();
+        for (StackTraceElement frame : stack) {
+            String className = frame.getClassName();
+            if (!className.startsWith("org.opencv.") || className.startsWith("org.opencv.android."))
+                return frame.toString();
+        }
+        return UNKNOWN_CALL_SITE;
+    }
+}
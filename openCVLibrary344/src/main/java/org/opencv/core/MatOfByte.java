@@ -78,6 +78,22 @@ public class MatOfByte extends Mat {
         return a;
     }
 
+    /**
+     * Copies up to {@code length} elements into {@code dst} from index {@code offset} without allocating,
+     * returns the number of elements copied. {@code length} and the result count Mat elements, not array
+     * entries: each element fills one entry of {@code dst}.
+     */
+    public int toArray(byte[] dst, int offset, int length) {
+        int num = checkVector(_channels, _depth);
+        if(num < 0)
+            throw new RuntimeException("Native Mat has unexpected type or size: " + toString());
+        int count = Math.min(num, length);
+        if(count <= 0)
+            return 0;
+        get(0, 0, dst, offset, count * _channels);
+        return count;
+    }
+
     public void fromList(List<Byte> lb) {
         if(lb==null || lb.size()==0)
             return;
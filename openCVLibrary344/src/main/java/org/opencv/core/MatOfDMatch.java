@@ -71,6 +71,33 @@ public class MatOfDMatch extends Mat {
         return a;
     }
 
+    /**
+     * Fills {@code dst} from index {@code offset} with up to {@code length} elements, reusing the objects
+     * already in the array, returns the number of elements copied. {@code length} and the result count
+     * Mat elements, each element fills one entry of {@code dst}.
+     */
+    public int toArray(DMatch[] dst, int offset, int length) {
+        int num = Math.min((int) total(), length);
+        if(num <= 0)
+            return 0;
+        if(offset < 0 || offset + num > dst.length)
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + num + ", array " + dst.length);
+        float buff[] = MatScratch.floats(num * _channels);
+        get(0, 0, buff, 0, num * _channels);
+        for(int i=0; i<num; i++) {
+            DMatch m = dst[offset+i];
+            if(m == null)
+                dst[offset+i] = new DMatch((int) buff[_channels*i+0], (int) buff[_channels*i+1], (int) buff[_channels*i+2], buff[_channels*i+3]);
+            else {
+                m.queryIdx = (int) buff[_channels*i+0];
+                m.trainIdx = (int) buff[_channels*i+1];
+                m.imgIdx = (int) buff[_channels*i+2];
+                m.distance = buff[_channels*i+3];
+            }
+        }
+        return num;
+    }
+
     public void fromList(List<DMatch> ldm) {
         DMatch adm[] = ldm.toArray(new DMatch[0]);
         fromArray(adm);
@@ -74,6 +74,37 @@ public class MatOfKeyPoint extends Mat {
         return a;
     }
 
+    /**
+     * Fills {@code dst} from index {@code offset} with up to {@code length} elements, reusing the objects
+     * already in the array, returns the number of elements copied. {@code length} and the result count
+     * Mat elements, each element fills one entry of {@code dst}.
+     */
+    public int toArray(KeyPoint[] dst, int offset, int length) {
+        int num = Math.min((int) total(), length);
+        if(num <= 0)
+            return 0;
+        if(offset < 0 || offset + num > dst.length)
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + num + ", array " + dst.length);
+        float buff[] = MatScratch.floats(num * _channels);
+        get(0, 0, buff, 0, num * _channels);
+        for(int i=0; i<num; i++) {
+            KeyPoint k = dst[offset+i];
+            if(k == null || k.pt == null)
+                dst[offset+i] = new KeyPoint( buff[_channels*i+0], buff[_channels*i+1], buff[_channels*i+2], buff[_channels*i+3],
+                                              buff[_channels*i+4], (int) buff[_channels*i+5], (int) buff[_channels*i+6] );
+            else {
+                k.pt.x = buff[_channels*i+0];
+                k.pt.y = buff[_channels*i+1];
+                k.size = buff[_channels*i+2];
+                k.angle = buff[_channels*i+3];
+                k.response = buff[_channels*i+4];
+                k.octave = (int) buff[_channels*i+5];
+                k.class_id = (int) buff[_channels*i+6];
+            }
+        }
+        return num;
+    }
+
     public void fromList(List<KeyPoint> lkp) {
         KeyPoint akp[] = lkp.toArray(new KeyPoint[0]);
         fromArray(akp);
@@ -66,6 +66,31 @@ public class MatOfPoint extends Mat {
         return ap;
     }
 
+    /**
+     * Fills {@code dst} from index {@code offset} with up to {@code length} elements, reusing the objects
+     * already in the array, returns the number of elements copied. {@code length} and the result count
+     * Mat elements, each element fills one entry of {@code dst}.
+     */
+    public int toArray(Point[] dst, int offset, int length) {
+        int num = Math.min((int) total(), length);
+        if(num <= 0)
+            return 0;
+        if(offset < 0 || offset + num > dst.length)
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + num + ", array " + dst.length);
+        int buff[] = MatScratch.ints(num * _channels);
+        get(0, 0, buff, 0, num * _channels);
+        for(int i=0; i<num; i++) {
+            Point p = dst[offset+i];
+            if(p == null)
+                dst[offset+i] = new Point(buff[i*_channels], buff[i*_channels+1]);
+            else {
+                p.x = buff[i*_channels];
+                p.y = buff[i*_channels+1];
+            }
+        }
+        return num;
+    }
+
     public void fromList(List<Point> lp) {
         Point ap[] = lp.toArray(new Point[0]);
         fromArray(ap);
@@ -67,6 +67,32 @@ public class MatOfPoint3 extends Mat {
         return ap;
     }
 
+    /**
+     * Fills {@code dst} from index {@code offset} with up to {@code length} elements, reusing the objects
+     * already in the array, returns the number of elements copied. {@code length} and the result count
+     * Mat elements, each element fills one entry of {@code dst}.
+     */
+    public int toArray(Point3[] dst, int offset, int length) {
+        int num = Math.min((int) total(), length);
+        if(num <= 0)
+            return 0;
+        if(offset < 0 || offset + num > dst.length)
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + num + ", array " + dst.length);
+        int buff[] = MatScratch.ints(num * _channels);
+        get(0, 0, buff, 0, num * _channels);
+        for(int i=0; i<num; i++) {
+            Point3 p = dst[offset+i];
+            if(p == null)
+                dst[offset+i] = new Point3(buff[i*_channels], buff[i*_channels+1], buff[i*_channels+2]);
+            else {
+                p.x = buff[i*_channels];
+                p.y = buff[i*_channels+1];
+                p.z = buff[i*_channels+2];
+            }
+        }
+        return num;
+    }
+
     public void fromList(List<Point3> lp) {
         Point3 ap[] = lp.toArray(new Point3[0]);
         fromArray(ap);
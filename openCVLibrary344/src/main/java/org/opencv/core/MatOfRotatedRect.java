@@ -74,6 +74,34 @@ public class MatOfRotatedRect extends Mat {
         return a;
     }
 
+    /**
+     * Fills {@code dst} from index {@code offset} with up to {@code length} elements, reusing the objects
+     * already in the array, returns the number of elements copied. {@code length} and the result count
+     * Mat elements, each element fills one entry of {@code dst}.
+     */
+    public int toArray(RotatedRect[] dst, int offset, int length) {
+        int num = Math.min((int) total(), length);
+        if(num <= 0)
+            return 0;
+        if(offset < 0 || offset + num > dst.length)
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + num + ", array " + dst.length);
+        float buff[] = MatScratch.floats(num * _channels);
+        get(0, 0, buff, 0, num * _channels);
+        for(int i=0; i<num; i++) {
+            RotatedRect r = dst[offset+i];
+            if(r == null || r.center == null || r.size == null)
+                dst[offset+i] = new RotatedRect(new Point(buff[_channels*i+0], buff[_channels*i+1]), new Size(buff[_channels*i+2], buff[_channels*i+3]), buff[_channels*i+4]);
+            else {
+                r.center.x = buff[_channels*i+0];
+                r.center.y = buff[_channels*i+1];
+                r.size.width = buff[_channels*i+2];
+                r.size.height = buff[_channels*i+3];
+                r.angle = buff[_channels*i+4];
+            }
+        }
+        return num;
+    }
+
     public void fromList(List<RotatedRect> lr) {
         RotatedRect ap[] = lr.toArray(new RotatedRect[0]);
         fromArray(ap);
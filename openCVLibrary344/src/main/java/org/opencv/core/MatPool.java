@@ -0,0 +1,164 @@
+package org.opencv.core;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded pool of Mats keyed by (rows, cols, type), so repeated work at the same resolution reuses
+ * native buffers instead of allocating and freeing them every time.
+ * {@link #acquire(int, int, int)} returns an idle Mat of the requested shape or allocates a new one,
+ * {@link #recycle(Mat)} hands it back. Idle Mats above the byte budget are released least recently
+ * recycled first. The content of an acquired Mat is undefined.
+ *
+ * Pooled Mats are never tracked by a {@link MatScope}, their owner must either recycle or release them.
+ */
+public class MatPool {
+
+    private final long mMaxBytes;
+    private final Map<Key, ArrayDeque<Mat>> mIdle = new HashMap<Key, ArrayDeque<Mat>>();
+    // Idle Mats in recycling order, the eldest is evicted first.
+    private final LinkedHashMap<Mat, Key> mLru = new LinkedHashMap<Mat, Key>();
+    private long mIdleBytes;
+    private long mHits;
+    private long mMisses;
+    private long mEvictions;
+
+    private static final class Key {
+        final int rows;
+        final int cols;
+        final int type;
+
+        Key(int rows, int cols, int type) {
+            this.rows = rows;
+            this.cols = cols;
+            this.type = type;
+        }
+
+        long bytes() {
+            return (long) rows * cols * CvType.ELEM_SIZE(type);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key key = (Key) o;
+            return rows == key.rows && cols == key.cols && type == key.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return (rows * 31 + cols) * 31 + type;
+        }
+    }
+
+    /**
+     * @param maxBytes - budget of the idle Mats kept for reuse
+     */
+    public MatPool(long maxBytes) {
+        if (maxBytes < 0)
+            throw new IllegalArgumentException("maxBytes must be >= 0");
+        mMaxBytes = maxBytes;
+    }
+
+    public Mat acquire(Size size, int type) {
+        return acquire((int) size.height, (int) size.width, type);
+    }
+
+    public Mat acquire(int rows, int cols, int type) {
+        Key key = new Key(rows, cols, type);
+        synchronized (this) {
+            ArrayDeque<Mat> idle = mIdle.get(key);
+            Mat mat = idle != null ? idle.pollLast() : null;
+            if (mat != null) {
+                if (idle.isEmpty())
+                    mIdle.remove(key);
+                mLru.remove(mat);
+                mIdleBytes -= key.bytes();
+                mHits++;
+                return mat;
+            }
+            mMisses++;
+        }
+        Mat mat = new Mat(rows, cols, type);
+        MatScope.untrack(mat);
+        return mat;
+    }
+
+    /**
+     * Returns a Mat for reuse. Submatrices, empty Mats and Mats larger than the budget are released instead.
+     */
+    public void recycle(Mat mat) {
+        if (mat.empty() || mat.isSubmatrix() || !mat.isContinuous()) {
+            mat.release();
+            return;
+        }
+        Key key = new Key(mat.rows(), mat.cols(), mat.type());
+        long bytes = key.bytes();
+        if (bytes > mMaxBytes) {
+            mat.release();
+            return;
+        }
+        MatScope.untrack(mat);
+        synchronized (this) {
+            if (mLru.containsKey(mat))
+                throw new IllegalStateException("Mat recycled twice");
+            ArrayDeque<Mat> idle = mIdle.get(key);
+            if (idle == null) {
+                idle = new ArrayDeque<Mat>();
+                mIdle.put(key, idle);
+            }
+            idle.addLast(mat);
+            mLru.put(mat, key);
+            mIdleBytes += bytes;
+            trim(mMaxBytes);
+        }
+    }
+
+    /**
+     * Releases every idle Mat.
+     */
+    public synchronized void clear() {
+        trim(0);
+    }
+
+    public synchronized long getIdleBytes() {
+        return mIdleBytes;
+    }
+
+    public synchronized int getIdleCount() {
+        return mLru.size();
+    }
+
+    public synchronized long getHitCount() {
+        return mHits;
+    }
+
+    public synchronized long getMissCount() {
+        return mMisses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return mEvictions;
+    }
+
+    private void trim(long maxBytes) {
+        Iterator<Map.Entry<Mat, Key>> it = mLru.entrySet().iterator();
+        while (mIdleBytes > maxBytes && it.hasNext()) {
+            Map.Entry<Mat, Key> eldest = it.next();
+            it.remove();
+            Mat mat = eldest.getKey();
+            Key key = eldest.getValue();
+            ArrayDeque<Mat> idle = mIdle.get(key);
+            idle.remove(mat);
+            if (idle.isEmpty())
+                mIdle.remove(key);
+            mIdleBytes -= key.bytes();
+            mEvictions++;
+            mat.release();
+        }
+    }
+}
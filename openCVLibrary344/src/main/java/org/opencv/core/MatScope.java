@@ -0,0 +1,141 @@
+package org.opencv.core;
+
+/**
+ * Releases the native buffers of temporary Mats deterministically instead of waiting for finalize().
+ * Every Mat constructed on this thread while the scope is open (including the Mats returned by
+ * OpenCV functions) is tracked and released, in reverse creation order, when the scope closes.
+ * Mats that must outlive the scope are passed to {@link #keep(Mat)}.
+ *
+ * <pre>
+ * MatScope scope = MatScope.open();
+ * try {
+ *     Mat gray = new Mat();
+ *     Imgproc.cvtColor(rgba, gray, Imgproc.COLOR_RGBA2GRAY);
+ *     result = scope.keep(process(gray));
+ * } finally {
+ *     scope.close();
+ * }
+ * </pre>
+ *
+ * Scopes nest, a Mat belongs to the innermost open scope and {@link #keep(Mat)} hands it over to the
+ * enclosing one. The finalizer of Mat still frees whatever is not released by a scope.
+ */
+public final class MatScope implements AutoCloseable {
+
+    private static final ThreadLocal<MatScope> sCurrent = new ThreadLocal<MatScope>();
+
+    private final MatScope mParent;
+    private final Thread mOwner;
+    private Mat[] mMats = new Mat[16];
+    private int mCount;
+    private boolean mClosed;
+
+    private MatScope(MatScope parent) {
+        mParent = parent;
+        mOwner = Thread.currentThread();
+    }
+
+    /**
+     * Opens a scope on the calling thread, it must be closed on the same thread.
+     */
+    public static MatScope open() {
+        MatScope scope = new MatScope(sCurrent.get());
+        sCurrent.set(scope);
+        return scope;
+    }
+
+    /**
+     * @return the innermost open scope of the calling thread, null if none
+     */
+    public static MatScope current() {
+        return sCurrent.get();
+    }
+
+    static void track(Mat mat) {
+        MatScope scope = sCurrent.get();
+        if (scope != null)
+            scope.add(mat);
+    }
+
+    /**
+     * Tracks a Mat created outside of the scope (e.g. on another thread), it is released on close.
+     */
+    public <T extends Mat> T add(T mat) {
+        checkOpen();
+        if (mCount == mMats.length) {
+            Mat[] grown = new Mat[mCount * 2];
+            System.arraycopy(mMats, 0, grown, 0, mCount);
+            mMats = grown;
+        }
+        mMats[mCount++] = mat;
+        return mat;
+    }
+
+    /**
+     * Excludes {@code mat} from this scope so it survives close(). Inside a nested scope the Mat
+     * moves to the enclosing scope, otherwise its owner is responsible for releasing it.
+     */
+    public <T extends Mat> T keep(T mat) {
+        checkOpen();
+        if (remove(mat) && mParent != null && !mParent.mClosed)
+            mParent.add(mat);
+        return mat;
+    }
+
+    /**
+     * Stops tracking a Mat whose lifetime is managed elsewhere (e.g. by a MatPool), in any open scope.
+     */
+    static void untrack(Mat mat) {
+        for (MatScope scope = sCurrent.get(); scope != null; scope = scope.mParent) {
+            if (scope.remove(mat))
+                return;
+        }
+    }
+
+    private boolean remove(Mat mat) {
+        // Kept Mats are usually the most recent ones.
+        for (int i = mCount - 1; i >= 0; i--) {
+            if (mMats[i] == mat) {
+                System.arraycopy(mMats, i + 1, mMats, i, mCount - i - 1);
+                mMats[--mCount] = null;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of Mats the scope will release
+     */
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * Releases the tracked Mats and restores the enclosing scope.
+     */
+    @Override
+    public void close() {
+        if (mClosed)
+            return;
+        if (Thread.currentThread() != mOwner)
+            throw new IllegalStateException("MatScope must be closed on the thread that opened it");
+        if (sCurrent.get() != this)
+            throw new IllegalStateException("Nested MatScope must be closed first");
+        mClosed = true;
+        if (mParent != null)
+            sCurrent.set(mParent);
+        else
+            sCurrent.remove();
+        for (int i = mCount - 1; i >= 0; i--) {
+            mMats[i].release();
+            mMats[i] = null;
+        }
+        mCount = 0;
+    }
+
+    private void checkOpen() {
+        if (mClosed)
+            throw new IllegalStateException("MatScope is closed");
+    }
+}
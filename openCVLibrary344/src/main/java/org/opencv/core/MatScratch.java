@@ -0,0 +1,60 @@
+package org.opencv.core;
+
+/**
+ * Per-thread scratch arrays for the allocation-free accessors of Mat and MatOf*.
+ * An array is only grown, never shrunk, so steady-state loops reuse the same one.
+ * Its content is only valid until the next call on the same thread.
+ */
+final class MatScratch {
+
+    private static final ThreadLocal<MatScratch> sScratch = new ThreadLocal<MatScratch>() {
+        @Override
+        protected MatScratch initialValue() {
+            return new MatScratch();
+        }
+    };
+
+    private byte[] mBytes = new byte[0];
+    private short[] mShorts = new short[0];
+    private int[] mInts = new int[0];
+    private float[] mFloats = new float[0];
+    private double[] mDoubles = new double[0];
+
+    private MatScratch() {
+    }
+
+    static byte[] bytes(int length) {
+        MatScratch s = sScratch.get();
+        if (s.mBytes.length < length)
+            s.mBytes = new byte[length];
+        return s.mBytes;
+    }
+
+    static short[] shorts(int length) {
+        MatScratch s = sScratch.get();
+        if (s.mShorts.length < length)
+            s.mShorts = new short[length];
+        return s.mShorts;
+    }
+
+    static int[] ints(int length) {
+        MatScratch s = sScratch.get();
+        if (s.mInts.length < length)
+            s.mInts = new int[length];
+        return s.mInts;
+    }
+
+    static float[] floats(int length) {
+        MatScratch s = sScratch.get();
+        if (s.mFloats.length < length)
+            s.mFloats = new float[length];
+        return s.mFloats;
+    }
+
+    static double[] doubles(int length) {
+        MatScratch s = sScratch.get();
+        if (s.mDoubles.length < length)
+            s.mDoubles = new double[length];
+        return s.mDoubles;
+    }
+}
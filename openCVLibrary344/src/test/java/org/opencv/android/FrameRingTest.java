@@ -0,0 +1,54 @@
+package org.opencv.android;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrameRingTest {
+
+    @Test
+    public void dropOldest_capacityOne_neverQueuesMoreThanOneFrame() {
+        FrameRing ring = new FrameRing(1, FrameRing.POLICY_DROP_OLDEST);
+        // The consumer is busy with one frame while the producer keeps publishing.
+        ring.publish(ring.acquireWrite());
+        int processing = ring.acquireRead();
+        for (int i = 0; i < 5; i++) {
+            ring.publish(ring.acquireWrite());
+            assertEquals(1, ring.getQueuedCount());
+        }
+        assertEquals(4, ring.getDroppedCount());
+
+        ring.release(processing);
+        int newest = ring.acquireRead();
+        assertEquals(0, ring.getQueuedCount());
+        ring.release(newest);
+    }
+
+    @Test
+    public void block_capacityOne_producerWaitsForConsumer() throws Exception {
+        final FrameRing ring = new FrameRing(1, FrameRing.POLICY_BLOCK);
+        final int frames = 2000;
+        final int[] maxQueued = new int[1];
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < frames; i++) {
+                    int slot = ring.acquireWrite();
+                    if (slot < 0)
+                        return;
+                    ring.publish(slot);
+                    maxQueued[0] = Math.max(maxQueued[0], ring.getQueuedCount());
+                }
+            }
+        });
+        producer.start();
+        for (int i = 0; i < frames; i++)
+            ring.release(ring.acquireRead());
+        producer.join(10000);
+
+        assertEquals(0, ring.getDroppedCount());
+        assertEquals(frames, ring.getProcessedCount());
+        assertTrue("queued " + maxQueued[0], maxQueued[0] <= 1);
+    }
+}